@@ -0,0 +1,109 @@
+/**
+ * Anytime solver for boards too large to solve optimally in time: a weighted A* search, ordering
+ * boards by moves + weight * heuristic, finds a first solution quickly, then searches are
+ * restarted with smaller weights, pruned by the best solution so far, until the weight reaches 1
+ * or the time budget runs out. A search with weight w that completes proves the best solution is
+ * at most w times longer than a shortest one, which is reported by bound().
+ */
+public class AnytimeSolver {
+
+    // Weights are kept in sixteenths so priorities stay integers for the bucket queue
+    private static final int SCALE = 16;
+
+    private boolean isSolvable;
+    private Solver best;
+    private double bound = Double.POSITIVE_INFINITY;
+
+    /**
+     * Solve the initial board within budgetMillis, starting with weight, using Manhattan distance
+     *
+     * @param initial
+     * @param weight
+     * @param budgetMillis
+     */
+    public AnytimeSolver(Board initial, double weight, long budgetMillis) {
+        this(initial, Heuristic.MANHATTAN, weight, budgetMillis);
+    }
+
+    /**
+     * Solve the initial board within budgetMillis, starting with weight. If the budget runs out
+     * before a first solution is found, moves() is -1 and bound() infinite.
+     *
+     * @param initial
+     * @param heuristic
+     * @param weight
+     * @param budgetMillis
+     */
+    public AnytimeSolver(Board initial, Heuristic heuristic, double weight, long budgetMillis) {
+        if (initial == null) {
+            throw new IllegalArgumentException("Board cannot be null");
+        }
+        if (heuristic == null) {
+            throw new IllegalArgumentException("Heuristic cannot be null");
+        }
+        if (!(weight >= 1) || weight > 1024) {
+            throw new IllegalArgumentException("weight should be between 1 and 1024");
+        }
+
+        long deadline = Solver.deadline(budgetMillis);
+        this.isSolvable = initial.isSolvable();
+        if (!isSolvable) return;
+
+        int scaledWeight = (int) Math.ceil(weight * SCALE);
+        while (true) {
+            int cutoff = best == null ? Integer.MAX_VALUE : best.moves();
+            Solver search = new Solver(initial, heuristic, deadline, scaledWeight, SCALE, cutoff, null);
+            if (search.timedOut()) break;
+
+            if (search.moves() >= 0) {
+                // Completed: no solution shorter than a weight-th of the new one was missed
+                best = search;
+                bound = Math.min(bound, (double) scaledWeight / SCALE);
+            } else {
+                // Running out of boards without a shorter solution proves the best one shortest
+                bound = 1;
+            }
+
+            if (bound == 1 || System.nanoTime() >= deadline) break;
+
+            // Halve the excess weight each round, down to exactly 1
+            scaledWeight = SCALE + (scaledWeight - SCALE) / 2;
+        }
+    }
+
+    /**
+     * Is the initial board solvable?
+     *
+     * @return boolean
+     */
+    public boolean isSolvable() {
+        return isSolvable;
+    }
+
+    /**
+     * Number of moves of the best solution found, -1 if none was
+     *
+     * @return int
+     */
+    public int moves() {
+        return best == null ? -1 : best.moves();
+    }
+
+    /**
+     * Factor by which the best solution found may exceed a shortest one, 1 once it is proven shortest
+     *
+     * @return double
+     */
+    public double bound() {
+        return isSolvable ? bound : 1;
+    }
+
+    /**
+     * Sequence of boards in the best solution found, null if there is none
+     *
+     * @return
+     */
+    public Iterable<Board> solution() {
+        return best == null ? null : best.solution();
+    }
+}
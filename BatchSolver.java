@@ -0,0 +1,271 @@
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves a stream of puzzles on a pool of workers. Puzzles are read one at a time into a bounded
+ * queue, so reading blocks while every worker is busy and the queue is full, and memory does not
+ * grow with the size of the input. Each puzzle gets the same time budget.
+ *
+ * Inputs are text files of puzzles in the usual format, an n followed by the n * n tiles, any
+ * number of them per file, or binary files (named *.bin) of records made of a byte n then, up to
+ * 4-by-4, the tiles packed in a long one nibble each in row-major order, otherwise n * n shorts.
+ *
+ * Results are written as records of: the int index of the puzzle in input order, an int number of
+ * moves (UNSOLVABLE or TIMED_OUT when there is no solution), then the directions the blank takes,
+ * 2 bits each and four to a byte, starting with the low bits. Records come in completion order.
+ */
+public class BatchSolver {
+
+    static final int UNSOLVABLE = -1;
+    static final int TIMED_OUT = -2;
+
+    private static final int QUEUE_PER_WORKER = 4;
+
+    private static class Job {
+        final int index;
+        final Board board;
+
+        Job(int index, Board board) {
+            this.index = index;
+            this.board = board;
+        }
+    }
+
+    // Marks the end of the input for one worker
+    private static final Job END = new Job(-1, null);
+
+    private final DataOutputStream out;
+    private final Heuristic heuristic;
+    private final long budgetMillis;
+    private final int threads;
+    private final SearchListener listener;
+    private final BlockingQueue<Job> queue;
+    private List<Future<Void>> workers;
+    private int count;
+
+    /**
+     * Create a driver writing results to out, giving each puzzle budgetMillis on threads workers
+     *
+     * @param out
+     * @param heuristic
+     * @param budgetMillis
+     * @param threads
+     */
+    public BatchSolver(OutputStream out, Heuristic heuristic, long budgetMillis, int threads) {
+        this(out, heuristic, budgetMillis, threads, null);
+    }
+
+    /**
+     * Create a driver as above that also reports the cost of every search to listener,
+     * which is called from all the workers
+     *
+     * @param out
+     * @param heuristic
+     * @param budgetMillis
+     * @param threads
+     * @param listener
+     */
+    public BatchSolver(OutputStream out, Heuristic heuristic, long budgetMillis, int threads, SearchListener listener) {
+        if (out == null) {
+            throw new IllegalArgumentException("Output cannot be null");
+        }
+        if (heuristic == null) {
+            throw new IllegalArgumentException("Heuristic cannot be null");
+        }
+        if (budgetMillis < 0 || threads <= 0) {
+            throw new IllegalArgumentException("budgetMillis or threads is invalid");
+        }
+
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.heuristic = heuristic;
+        this.budgetMillis = budgetMillis;
+        this.threads = threads;
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(QUEUE_PER_WORKER * threads);
+    }
+
+    /**
+     * Solve every puzzle of the input files and flush the results
+     *
+     * @param files
+     * @return the number of puzzles solved
+     * @throws IOException
+     */
+    public int run(List<String> files) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        workers = new ArrayList<>();
+        for (int w = 0 ; w < threads ; w++) {
+            workers.add(executor.submit(new Worker()));
+        }
+
+        try {
+            for (String file : files) {
+                if (file.endsWith(".bin")) {
+                    readBinary(file);
+                } else {
+                    readText(file);
+                }
+            }
+
+            for (int w = 0 ; w < threads ; w++) {
+                put(END);
+            }
+
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IllegalStateException("Worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        out.flush();
+        return count;
+    }
+
+    private void readText(String file) throws InterruptedException, ExecutionException {
+        // In is not AutoCloseable
+        In in = new In(file);
+        try {
+            while (!in.isEmpty()) {
+                int n = in.readInt();
+                int[][] tiles = new int[n][n];
+                for (int i = 0 ; i < n ; i++) {
+                    for (int j = 0 ; j < n ; j++) {
+                        tiles[i][j] = in.readInt();
+                    }
+                }
+
+                put(new Job(count++, new Board(tiles)));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void readBinary(String file) throws IOException, InterruptedException, ExecutionException {
+        try (InputStream stream = Files.newInputStream(Paths.get(file));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            for (int n = in.read() ; n > 0 ; n = in.read()) {
+                Board board;
+                if (n <= 4) {
+                    board = new Board(n, in.readLong());
+                } else {
+                    int[][] tiles = new int[n][n];
+                    for (int i = 0 ; i < n ; i++) {
+                        for (int j = 0 ; j < n ; j++) {
+                            tiles[i][j] = in.readShort();
+                        }
+                    }
+
+                    board = new Board(tiles);
+                }
+
+                put(new Job(count++, board));
+            }
+        } catch (EOFException e) {
+            throw new IllegalArgumentException(file + " ends in the middle of a puzzle", e);
+        }
+    }
+
+    /**
+     * Blocks while the queue is full, which holds reading back to the pace of the workers,
+     * unless a worker failed and the queue may never drain
+     */
+    private void put(Job job) throws InterruptedException, ExecutionException {
+        while (!queue.offer(job, 100, TimeUnit.MILLISECONDS)) {
+            for (Future<Void> worker : workers) {
+                if (worker.isDone()) {
+                    worker.get();
+                }
+            }
+        }
+    }
+
+    private class Worker implements Callable<Void> {
+        @Override
+        public Void call() throws IOException, InterruptedException {
+            for (Job job = queue.take() ; job != END ; job = queue.take()) {
+                Solver solver = new Solver(job.board, heuristic, budgetMillis, listener);
+                write(job.index, solver);
+            }
+
+            return null;
+        }
+    }
+
+    private void write(int index, Solver solver) throws IOException {
+        int moves = !solver.isSolvable() ? UNSOLVABLE : solver.moves() < 0 ? TIMED_OUT : solver.moves();
+
+        // Pack the directions before taking the lock, so workers only wait on each other to copy bytes
+        byte packed[] = new byte[Math.max(moves, 0) + 3 >> 2];
+        if (moves > 0) {
+            int path[] = solver.path();
+            for (int i = 0 ; i < moves ; i++) {
+                packed[i >> 2] |= path[i] << ((i & 3) << 1);
+            }
+        }
+
+        synchronized (out) {
+            out.writeInt(index);
+            out.writeInt(moves);
+            out.write(packed);
+        }
+    }
+
+    /**
+     * Solves the puzzles in the files named by the arguments after the output file ("-" for
+     * standard output) and the time budget per puzzle in milliseconds
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        OutputStream out = args[0].equals("-") ? System.out : Files.newOutputStream(Paths.get(args[0]));
+        long budgetMillis = Long.parseLong(args[1]);
+        List<String> files = new ArrayList<>();
+        for (int i = 2 ; i < args.length ; i++) {
+            files.add(args[i]);
+        }
+
+        long start = System.currentTimeMillis();
+        SearchHistograms histograms = new SearchHistograms();
+        BatchSolver batch = new BatchSolver(out, Heuristic.LINEAR_CONFLICT, budgetMillis,
+                Runtime.getRuntime().availableProcessors(), histograms);
+        int count = batch.run(files);
+        if (out != System.out) {
+            out.close();
+            StdOut.println(count + " puzzles in " + (System.currentTimeMillis() - start) + " ms");
+            StdOut.print(histograms);
+        }
+    }
+}
@@ -1,28 +1,28 @@
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdRandom;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Board {
 
-    private int tiles[][];
+    // Directions the blank can move in; the reverse of direction d is d ^ 2
+    static final int UP = 0;
+    static final int LEFT = 1;
+    static final int DOWN = 2;
+    static final int RIGHT = 3;
+
+    // Boards up to this dimension keep one tile per nibble of a long
+    private static final int PACKED_DIMENSION = 4;
+
     private int N;
-    private int firstRandom;
-    private int secondRandom;
+    private long packedTiles;
+    private short cells[];
+    private int blank;
+    private long zobristKey;
     private int manhattanDistance;
     private int hammingDistance;
 
-    private class Coordinate {
-        int row;
-        int col;
-
-        public Coordinate(int row, int col) {
-            this.row = row;
-            this.col = col;
-        }
-    }
-
     /**
      * Create a board from an n-by-n array of tiles,
      * where tiles[row][col] = tile at (row, col)
@@ -32,37 +32,152 @@ public class Board {
      */
     public Board(int[][] tiles) {
         this.N = tiles[0].length;
-        this.tiles = deepCopy(tiles, N);
-        this.firstRandom = StdRandom.uniform(N * N - 1) + 1;
-        this.secondRandom = StdRandom.uniform(N * N - 1) + 1;
-        while (secondRandom == firstRandom) {
-            secondRandom = StdRandom.uniform(N * N - 1) + 1;
+        if (N > PACKED_DIMENSION) {
+            this.cells = new short[N * N];
+        }
+
+        for (int i = 0 ; i < N ; i++) {
+            for (int j = 0 ; j < N ; j++) {
+                int index = N * i + j;
+                if (tiles[i][j] == 0) {
+                    blank = index;
+                }
+
+                if (cells == null) {
+                    packedTiles |= (long) tiles[i][j] << (index << 2);
+                } else {
+                    cells[index] = (short) tiles[i][j];
+                    zobristKey ^= zobrist(tiles[i][j], index);
+                }
+            }
         }
 
         this.hammingDistance = preComputeHamming();
         this.manhattanDistance = preComputeManhattan();
     }
 
-    private int[][] deepCopy(int[][] tiles, int n) {
-        int arr[][] = new int[n][n];
-        for (int i = 0 ; i < n ; i++) {
-            for (int j = 0 ; j < n ; j++) {
-                arr[i][j] = tiles[i][j];
+    /**
+     * Board of dimension n whose tiles are packed in key, the inverse of key() up to 4-by-4
+     */
+    Board(int n, long key) {
+        if (n > PACKED_DIMENSION) {
+            throw new IllegalArgumentException("Only boards up to " + PACKED_DIMENSION + "-by-" + PACKED_DIMENSION + " are packed");
+        }
+
+        this.N = n;
+        this.packedTiles = key;
+        for (int index = 0 ; index < N * N ; index++) {
+            if (tileAt(index) == 0) {
+                blank = index;
             }
         }
 
-        return arr;
+        this.hammingDistance = preComputeHamming();
+        this.manhattanDistance = preComputeManhattan();
     }
 
-    private Coordinate[] buildCoordinates(int[][] tiles) {
-        Coordinate [] coordinates = new Coordinate[N * N];
-        for (int i = 0 ; i < N ; i++) {
-            for (int j = 0 ; j < N ; j++) {
-                coordinates[tiles[i][j]] = new Coordinate(i, j);
-            }
+    /**
+     * Board of dimension n whose tiles are packed in key and whose blank and distances are
+     * packed in distances, as returned by distances(); nothing is rescanned
+     */
+    Board(int n, long key, int distances) {
+        this.N = n;
+        this.packedTiles = key;
+        this.blank = distances & 0xFF;
+        this.hammingDistance = (distances >>> 8) & 0xFF;
+        this.manhattanDistance = distances >>> 16;
+    }
+
+    /**
+     * Copy of source with the tiles at first and second exchanged.
+     * Only those two tiles move, so both distances are the source's adjusted by their moves,
+     * in constant time.
+     */
+    private Board(Board source, int first, int second) {
+        this.N = source.N;
+
+        int firstTile = source.tileAt(first);
+        int secondTile = source.tileAt(second);
+        if (source.cells == null) {
+            long firstShift = first << 2;
+            long secondShift = second << 2;
+            this.packedTiles = source.packedTiles
+                    & ~(0xFL << firstShift) & ~(0xFL << secondShift)
+                    | (long) secondTile << firstShift
+                    | (long) firstTile << secondShift;
+        } else {
+            this.cells = source.cells.clone();
+            cells[first] = (short) secondTile;
+            cells[second] = (short) firstTile;
+            this.zobristKey = source.zobristKey
+                    ^ zobrist(firstTile, first) ^ zobrist(secondTile, second)
+                    ^ zobrist(firstTile, second) ^ zobrist(secondTile, first);
         }
 
-        return coordinates;
+        this.blank = source.blank == first ? second : source.blank == second ? first : source.blank;
+        this.hammingDistance = source.hammingDistance
+                - misplaced(firstTile, first) - misplaced(secondTile, second)
+                + misplaced(firstTile, second) + misplaced(secondTile, first);
+        this.manhattanDistance = source.manhattanDistance
+                - manhattan(firstTile, first) - manhattan(secondTile, second)
+                + manhattan(firstTile, second) + manhattan(secondTile, first);
+    }
+
+    /**
+     * Tile at index row * n + col
+     */
+    int tileAt(int index) {
+        if (cells == null) {
+            return (int) (packedTiles >>> (index << 2)) & 0xF;
+        }
+
+        return cells[index];
+    }
+
+    /**
+     * 64 bit key of the tiles: the packed tiles themselves up to 4-by-4, so equal keys mean
+     * equal boards, and a Zobrist hash kept up to date on every swap for larger boards
+     */
+    long key() {
+        return cells == null ? packedTiles : zobristKey;
+    }
+
+    /**
+     * Blank index, Hamming and Manhattan distances in one int, which along with key() rebuilds
+     * a board up to 4-by-4 in constant time
+     */
+    int distances() {
+        return blank | hammingDistance << 8 | manhattanDistance << 16;
+    }
+
+    /**
+     * Do equal keys imply equal boards of this dimension ?
+     */
+    boolean hasExactKey() {
+        return cells == null;
+    }
+
+    /**
+     * Zobrist value of tile at index, derived by mixing rather than read from a table of randoms
+     */
+    private long zobrist(int tile, int index) {
+        return mix((long) tile * N * N + index);
+    }
+
+    /**
+     * Finalizer of the SplitMix64 generator, spreads every input bit over the whole word
+     */
+    static long mix(long key) {
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * Index row * n + col of the blank
+     */
+    int blankIndex() {
+        return blank;
     }
 
     /**
@@ -77,7 +192,7 @@ public class Board {
         for (int i = 0 ; i < N ; i++) {
             builder.append(" ");
             for (int j = 0 ; j < N ; j++) {
-                builder.append(tiles[i][j]);
+                builder.append(tileAt(N * i + j));
                 if (j != N - 1) {
                     builder.append("  ");
                 }
@@ -110,25 +225,15 @@ public class Board {
 
     private int preComputeHamming() {
         int hammingDist = 0;
-        for (int i = 0 ; i < N ; i++) {
-            for (int j = 0 ; j < N ; j++) {
-                int tileMapping = expectedTileNumber(i, j);
-                if (tileMapping == 0) {
-                    continue;
-                }
-
-                if (tileMapping != tiles[i][j]) {
-                    hammingDist += 1;
-                }
-            }
+        for (int index = 0 ; index < N * N ; index++) {
+            hammingDist += misplaced(tileAt(index), index);
         }
 
         return hammingDist;
     }
 
-    private int expectedTileNumber(int row, int col) {
-        int mapping = N * row + col + 1;
-        return mapping == N * N ? 0 : mapping;
+    private int misplaced(int tile, int index) {
+        return tile != 0 && tile != index + 1 ? 1 : 0;
     }
 
     /**
@@ -141,24 +246,22 @@ public class Board {
     }
 
     private int preComputeManhattan() {
-        Coordinate[] coordinates = buildCoordinates(tiles);
-
         int manhattanDist = 0;
-        for (int i = 0 ; i < N ; i++) {
-            for (int j = 0 ; j < N ; j++) {
-                int tileMapping = expectedTileNumber(i, j);
-                if (tileMapping == 0) {
-                    continue;
-                }
-
-                manhattanDist += Math.abs(i - coordinates[tileMapping].row);
-                manhattanDist += Math.abs(j - coordinates[tileMapping].col);
-            }
+        for (int index = 0 ; index < N * N ; index++) {
+            manhattanDist += manhattan(tileAt(index), index);
         }
 
         return manhattanDist;
     }
 
+    private int manhattan(int tile, int index) {
+        return tile != 0 ? distance(tile - 1, index) : 0;
+    }
+
+    private int distance(int first, int second) {
+        return Math.abs(first / N - second / N) + Math.abs(first % N - second % N);
+    }
+
     /**
      * Is this board the goal board
      *
@@ -180,16 +283,53 @@ public class Board {
 
         Board otherBoard = (Board) other;
         if (dimension() != otherBoard.dimension()) return false;
+        if (cells == null) return packedTiles == otherBoard.packedTiles;
 
-        for (int i = 0 ; i < N ; i++) {
-            for (int j = 0 ; j < N ; j++) {
-                if (tiles[i][j] != otherBoard.tiles[i][j]) {
-                    return false;
-                }
+        return Arrays.equals(cells, otherBoard.cells);
+    }
+
+    /**
+     * Hash code consistent with equals
+     *
+     * @return int
+     */
+    public int hashCode() {
+        long hash = mix(key());
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Can the goal be reached from this board ?
+     * Every move keeps the parity of the tile permutation, read row by row skipping the blank,
+     * when n is odd, and flips it together with the row of the blank when n is even. The parity
+     * comes from counting the cycles of the permutation, in O(n^2).
+     */
+    boolean isSolvable() {
+        int size = N * N - 1;
+        int permutation[] = new int[size];
+        for (int index = 0, position = 0 ; index < N * N ; index++) {
+            if (index != blank) {
+                permutation[position++] = tileAt(index) - 1;
+            }
+        }
+
+        int cycles = 0;
+        boolean visited[] = new boolean[size];
+        for (int start = 0 ; start < size ; start++) {
+            if (visited[start]) continue;
+
+            cycles++;
+            for (int position = start ; !visited[position] ; position = permutation[position]) {
+                visited[position] = true;
             }
         }
 
-        return true;
+        boolean oddPermutation = (size - cycles) % 2 == 1;
+        if (N % 2 == 1) {
+            return !oddPermutation;
+        }
+
+        return oddPermutation == ((blank / N) % 2 == 0);
     }
 
     /**
@@ -198,33 +338,38 @@ public class Board {
      * @return
      */
     public Iterable<Board> neighbors() {
-        Coordinate[] coordinates = buildCoordinates(tiles);
-        List<Board> neighbors = new ArrayList<>();
-        generate(neighbors, coordinates[0].row - 1, coordinates[0].col, coordinates[0]);
-        generate(neighbors, coordinates[0].row, coordinates[0].col - 1, coordinates[0]);
-        generate(neighbors, coordinates[0].row + 1, coordinates[0].col, coordinates[0]);
-        generate(neighbors, coordinates[0].row, coordinates[0].col + 1, coordinates[0]);
+        List<Board> neighbors = new ArrayList<>(4);
+        for (int direction = UP ; direction <= RIGHT ; direction++) {
+            Board neighbor = move(direction);
+            if (neighbor != null) {
+                neighbors.add(neighbor);
+            }
+        }
 
         return neighbors;
     }
 
-    private void generate(List<Board> neighbors, int row, int col, Coordinate reference) {
-        if (isValid(row, col)) {
-            int newTiles[][] = deepCopy(tiles, N);
-            swap(newTiles, row, col, reference);
-
-            neighbors.add(new Board(newTiles));
-        }
-    }
+    /**
+     * Board reached by moving the blank in direction, null if the blank is against that edge
+     */
+    Board move(int direction) {
+        int target = target(direction);
+        if (target < 0) return null;
 
-    private void swap(int[][] newTiles, int row, int col, Coordinate coordinate) {
-        int temp = newTiles[coordinate.row][coordinate.col];
-        newTiles[coordinate.row][coordinate.col] = newTiles[row][col];
-        newTiles[row][col] = temp;
+        return new Board(this, blank, target);
     }
 
-    private boolean isValid(int row, int col) {
-        return row >= 0 && row < N && col >= 0 && col < N;
+    /**
+     * Index the blank moves to in direction, -1 if the blank is against that edge
+     */
+    int target(int direction) {
+        switch (direction) {
+            case UP:    return blank >= N ? blank - N : -1;
+            case LEFT:  return blank % N != 0 ? blank - 1 : -1;
+            case DOWN:  return blank < N * N - N ? blank + N : -1;
+            case RIGHT: return blank % N != N - 1 ? blank + 1 : -1;
+            default:    throw new IllegalArgumentException("direction = " + direction + " is not a valid direction.");
+        }
     }
 
     /**
@@ -233,11 +378,8 @@ public class Board {
      * @return Board
      */
     public Board twin() {
-        int newTiles[][] = deepCopy(tiles, N);
-        Coordinate[] coordinates = buildCoordinates(tiles);
-        swap(newTiles, coordinates[firstRandom].row, coordinates[firstRandom].col, coordinates[secondRandom]);
-
-        return new Board(newTiles);
+        int first = blank < 2 ? 2 : 0;
+        return new Board(this, first, first + 1);
     }
 
     // unit testing (not graded)
@@ -0,0 +1,196 @@
+import java.util.Arrays;
+
+/**
+ * Bond percolation on any {@link Lattice}: every site is open and the bonds between neighbouring
+ * sites are opened one at a time. Each site owns one bond per pair of neighbour offsets, bond
+ * site * (degree / 2) + k joining the site to its neighbour along offset 2k. Bonds that would
+ * reach into the padding do not exist and are never opened.
+ */
+public class BondPercolation implements PercolationSystem {
+
+    private static final byte CONNECTED_BOTH = Lattice.TOP_LAYER | Lattice.BOTTOM_LAYER;
+
+    private Lattice lattice;
+    private UnionFind unionFind;
+    private byte rootStatus[];
+    private boolean interior[];
+    private int bondOffsets[];
+    private int siteEpoch[];
+    private int bondEpoch[];
+    private int epoch;
+    private int bondCount;
+    private int openBondCount;
+    private int largestClusterSize;
+    private boolean percolates;
+
+    /**
+     * Create the lattice with all bonds blocked
+     *
+     * @param lattice
+     */
+    public BondPercolation(Lattice lattice) {
+        if (lattice == null) {
+            throw new IllegalArgumentException("Lattice cannot be null");
+        }
+        if (lattice.dimension() < 2) {
+            throw new IllegalArgumentException("n should be at least 2 for bond percolation");
+        }
+
+        // Checked before allocating anything, as Lattice checks its padded size
+        long longBonds = (long) lattice.sites() * (lattice.degree() / 2);
+        if (longBonds > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("n = " + lattice.dimension() + " has too many bonds to number them");
+        }
+        int bonds = (int) longBonds;
+
+        this.lattice = lattice;
+        this.unionFind = new UnionFind(lattice.paddedSize());
+        this.rootStatus = new byte[lattice.paddedSize()];
+        this.interior = lattice.interiorMask();
+        this.siteEpoch = new int[lattice.paddedSize()];
+
+        int offsets[] = lattice.neighbourOffsets();
+        this.bondOffsets = new int[offsets.length / 2];
+        for (int k = 0 ; k < bondOffsets.length ; k++) {
+            bondOffsets[k] = offsets[2 * k];
+        }
+
+        this.bondEpoch = new int[bonds];
+        for (int bond = 0 ; bond < bondEpoch.length ; bond++) {
+            if (exists(bond)) {
+                bondCount++;
+            }
+        }
+
+        this.epoch = 1;
+        this.largestClusterSize = 1;
+    }
+
+    private boolean exists(int bond) {
+        int siteMapping = lattice.paddedIndex(bond / bondOffsets.length);
+        return interior[siteMapping + bondOffsets[bond % bondOffsets.length]];
+    }
+
+    /**
+     * Open bond if it exists and is not open already
+     *
+     * @param bond
+     * @return true if a blocked bond was opened
+     */
+    public boolean open(int bond) {
+        validate(bond);
+        if (bondEpoch[bond] == epoch) return false;
+
+        int siteMapping = lattice.paddedIndex(bond / bondOffsets.length);
+        int neighbourMapping = siteMapping + bondOffsets[bond % bondOffsets.length];
+        if (!interior[neighbourMapping]) return false;
+
+        bondEpoch[bond] = epoch;
+        openBondCount++;
+
+        int root = unionFind.find(touch(siteMapping));
+        int neighbourRoot = unionFind.find(touch(neighbourMapping));
+        byte status = (byte) (rootStatus[root] | rootStatus[neighbourRoot]);
+        root = unionFind.unionRoots(root, neighbourRoot);
+
+        rootStatus[root] = status;
+        if (status == CONNECTED_BOTH) {
+            percolates = true;
+        }
+
+        largestClusterSize = Math.max(largestClusterSize, unionFind.size(root));
+        return true;
+    }
+
+    /**
+     * Sites start the epoch as singletons carrying their own layer flags, set up on first use
+     */
+    private int touch(int siteMapping) {
+        if (siteEpoch[siteMapping] != epoch) {
+            siteEpoch[siteMapping] = epoch;
+            unionFind.makeSet(siteMapping);
+            rootStatus[siteMapping] = lattice.layerStatus(siteMapping);
+        }
+
+        return siteMapping;
+    }
+
+    /**
+     * Block every bond again, reusing the arrays of this lattice
+     */
+    public void reset() {
+        openBondCount = 0;
+        largestClusterSize = 1;
+        percolates = false;
+
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(siteEpoch, 0);
+            Arrays.fill(bondEpoch, 0);
+            epoch = 0;
+        }
+
+        epoch++;
+    }
+
+    private void validate(int bond) {
+        if (bond < 0 || bond >= bondEpoch.length)
+            throw new IllegalArgumentException("bond = " + bond + " is not in the permitted range.");
+    }
+
+    /**
+     * Is bond open ?
+     *
+     * @param bond
+     * @return
+     */
+    public boolean isOpen(int bond) {
+        validate(bond);
+        return bondEpoch[bond] == epoch;
+    }
+
+    /**
+     * Number of open bonds
+     *
+     * @return
+     */
+    public int numberOfOpenBonds() {
+        return openBondCount;
+    }
+
+    /**
+     * Number of sites in the largest cluster
+     *
+     * @return
+     */
+    public int largestClusterSize() {
+        return largestClusterSize;
+    }
+
+    /**
+     * Does the system percolate ?
+     *
+     * @return
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * The lattice
+     *
+     * @return
+     */
+    public Lattice lattice() {
+        return lattice;
+    }
+
+    @Override
+    public int elements() {
+        return bondEpoch.length;
+    }
+
+    @Override
+    public int openableElements() {
+        return bondCount;
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Priority queue of items with small non-negative integer priorities, kept as an array of
+ * buckets indexed by priority. Items of equal priority come out last in, first out.
+ * Inserting is O(1) and removing the minimum is O(1) amortized as long as the minimum
+ * priority mostly grows, as f-values do in A*.
+ */
+public class BucketQueue<Item> {
+
+    private Object buckets[][] = new Object[64][];
+    private int counts[] = new int[64];
+
+    // No bucket below min holds an item
+    private int min;
+    private int N;
+
+    /**
+     * Is the queue empty ?
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return N == 0;
+    }
+
+    /**
+     * Return the number of items on the queue
+     *
+     * @return int
+     */
+    public int size() {
+        return N;
+    }
+
+    /**
+     * Add the item with the given priority
+     *
+     * @param item
+     * @param priority
+     */
+    public void insert(Item item, int priority) {
+        if (item == null) {
+            throw new IllegalArgumentException("Item cannot be null");
+        }
+        if (priority < 0) {
+            throw new IllegalArgumentException("Priority should be non-negative, not " + priority);
+        }
+
+        if (priority >= buckets.length) {
+            int capacity = Math.max(2 * buckets.length, priority + 1);
+            buckets = Arrays.copyOf(buckets, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        Object bucket[] = buckets[priority];
+        if (bucket == null) {
+            bucket = buckets[priority] = new Object[16];
+        } else if (counts[priority] == bucket.length) {
+            bucket = buckets[priority] = Arrays.copyOf(bucket, 2 * bucket.length);
+        }
+
+        bucket[counts[priority]++] = item;
+        if (N++ == 0 || priority < min) {
+            min = priority;
+        }
+    }
+
+    /**
+     * Priority of the items delMin would return next
+     *
+     * @return int
+     */
+    public int minPriority() {
+        if (isEmpty()) {
+            throw new NoSuchElementException("Queue is empty");
+        }
+
+        while (counts[min] == 0) {
+            min++;
+        }
+
+        return min;
+    }
+
+    /**
+     * Remove and return the most recently inserted item of the smallest priority
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public Item delMin() {
+        int priority = minPriority();
+        Object bucket[] = buckets[priority];
+        Item item = (Item) bucket[--counts[priority]];
+        bucket[counts[priority]] = null;
+        N--;
+
+        return item;
+    }
+}
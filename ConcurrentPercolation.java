@@ -0,0 +1,287 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Thread-safe n-by-n percolation grid that many threads can open sites on at once.
+ * It uses a lock-free union-find: roots are linked with a compare-and-set, always the lower index
+ * under the higher one so no cycle can form, and paths are halved with compare-and-set too.
+ * Each site keeps its parent, an open bit and connected-to-top and connected-to-bottom flags in
+ * one word, so flags are only ever added to roots and freeze when the root is linked. A site's
+ * fullness is read off the flags all along its path to the root, and halving only skips a node
+ * whose flags its grandparent already has, so the flags seen from a site never shrink. Queries
+ * reflect every open that completed before they started, and once the system percolates or a
+ * site is full it stays so.
+ */
+public class ConcurrentPercolation {
+
+    private static final int CONNECTED_TOP = 1;
+    private static final int CONNECTED_BOTTOM = 2;
+    private static final int CONNECTED_BOTH = CONNECTED_TOP | CONNECTED_BOTTOM;
+    private static final int OPEN = 4;
+
+    // Parent in the high 32 bits, status in the low 32 bits
+    private final AtomicLongArray nodes;
+    // Striped, so opens on different cores do not all contend for one counter
+    private final LongAdder openSiteCount;
+    private final int neighbourOffsets[];
+    private final int dimension;
+    private final int stride;
+    private volatile boolean percolates;
+
+    /**
+     * Create n-by-n grid, with all sites blocked
+     *
+     * @param n
+     */
+    public ConcurrentPercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n should be greater than 0");
+        }
+
+        this.dimension = n;
+        this.stride = n + 2;
+
+        int paddedSize = stride * stride;
+        this.nodes = new AtomicLongArray(paddedSize);
+        for (int i = 0 ; i < paddedSize ; i++) {
+            nodes.lazySet(i, node(i, 0));
+        }
+
+        this.openSiteCount = new LongAdder();
+        this.neighbourOffsets = new int[] { -stride, stride, 1, -1 };
+    }
+
+    /**
+     * Open site (row, col) if it is not open already, safe to call from any thread
+     *
+     * @param row
+     * @param col
+     */
+    public void open(int row, int col) {
+        validate(row, col);
+
+        int siteMapping = rowColSiteMapping(row, col);
+        int layerStatus = layerStatus(row);
+
+        // The open bit and the layer flags become visible together, before any neighbour can link to the site,
+        // so the site is still a root here
+        long previous = nodes.getAndAccumulate(siteMapping, OPEN | layerStatus, (a, b) -> a | b);
+        if ((status(previous) & OPEN) != 0) return;
+
+        openSiteCount.increment();
+        if (layerStatus == CONNECTED_BOTH) {
+            percolates = true;
+        }
+
+        for (int offset : neighbourOffsets) {
+            int neighbourMapping = siteMapping + offset;
+            if ((status(nodes.get(neighbourMapping)) & OPEN) != 0) {
+                union(siteMapping, neighbourMapping);
+            }
+        }
+    }
+
+    private static long node(int parent, int status) {
+        return (long) parent << 32 | status;
+    }
+
+    private static int parent(long node) {
+        return (int) (node >>> 32);
+    }
+
+    private static int status(long node) {
+        return (int) node;
+    }
+
+    private int find(int p) {
+        while (true) {
+            long node = nodes.get(p);
+            int up = parent(node);
+            if (up == p) return p;
+
+            long upNode = nodes.get(up);
+            int grandParent = parent(upNode);
+            if (up == grandParent) return up;
+
+            // up is not a root, so its flags are frozen and skipping it loses nothing once grandParent has them
+            int upFlags = status(upNode) & CONNECTED_BOTH;
+            if ((upFlags & ~status(nodes.get(grandParent))) == 0) {
+                nodes.compareAndSet(p, node, node(grandParent, status(node)));
+            }
+
+            p = up;
+        }
+    }
+
+    private void union(int p, int q) {
+        while (true) {
+            int rootP = find(p);
+            int rootQ = find(q);
+            if (rootP == rootQ) return;
+
+            int child = Math.min(rootP, rootQ);
+            int root = Math.max(rootP, rootQ);
+            long childNode = nodes.get(child);
+            if (parent(childNode) != child) continue;
+
+            // Linking freezes the child's flags in the same step, so none added to it meanwhile are lost
+            if (nodes.compareAndSet(child, childNode, node(root, status(childNode)))) {
+                propagate(root, status(childNode) & CONNECTED_BOTH);
+                return;
+            }
+        }
+    }
+
+    /**
+     * OR the flags into the root, following it up if it was linked under another root meanwhile
+     */
+    private void propagate(int root, int flags) {
+        while (true) {
+            long node = nodes.get(root);
+            if (parent(node) != root) {
+                root = find(root);
+                continue;
+            }
+
+            int now = status(node) | flags;
+            if (now == status(node) || nodes.compareAndSet(root, node, node(root, now))) {
+                if ((now & CONNECTED_BOTH) == CONNECTED_BOTH) {
+                    percolates = true;
+                }
+
+                return;
+            }
+        }
+    }
+
+    private int layerStatus(int row) {
+        int layerStatus = 0;
+        if (row == 1) {
+            layerStatus |= CONNECTED_TOP;
+        }
+
+        if (row == dimension) {
+            layerStatus |= CONNECTED_BOTTOM;
+        }
+
+        return layerStatus;
+    }
+
+    private void validate(int row, int col) {
+        if (row < 1 || row > dimension || col < 1 || col > dimension)
+            throw new IllegalArgumentException("row = " + row + ", col = " + col + " are not in the permitted range.");
+    }
+
+    /**
+     * Is site (row, col) open ?
+     *
+     * @param row
+     * @param col
+     *
+     * @return
+     */
+    public boolean isOpen(int row, int col) {
+        validate(row, col);
+        return (status(nodes.get(rowColSiteMapping(row, col))) & OPEN) != 0;
+    }
+
+    /**
+     * Is site (row, col) full ?
+     *
+     * @param row
+     * @param col
+     * @return
+     */
+    public boolean isFull(int row, int col) {
+        validate(row, col);
+        // Any node on the path may hold the flag: one just linked may not have passed it up yet
+        int p = rowColSiteMapping(row, col);
+        int flags = 0;
+        while (true) {
+            long node = nodes.get(p);
+            flags |= status(node);
+            if ((flags & OPEN) == 0) return false;
+            if ((flags & CONNECTED_TOP) != 0) return true;
+            if (parent(node) == p) return false;
+
+            p = parent(node);
+        }
+    }
+
+    /**
+     * Number of open sites; exact once the opens running meanwhile have completed
+     *
+     * @return
+     */
+    public int numberOfOpenSites() {
+        return (int) openSiteCount.sum();
+    }
+
+    /**
+     * Does the system percolate ?
+     *
+     * @return
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    private int rowColSiteMapping(int row, int col) {
+        return row * stride + col;
+    }
+
+    /**
+     * Test client, makes p * n^2 random opens on an n-by-n grid from all cores while another
+     * thread keeps checking that no site found full is later found not full
+     *
+     * @param args
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int n = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+
+        final ConcurrentPercolation percolation = new ConcurrentPercolation(n);
+        final long seed = new SplittableRandom().nextLong();
+        final int sites = (int) (p * n * n);
+
+        final AtomicInteger regressions = new AtomicInteger();
+        final AtomicBoolean opening = new AtomicBoolean(true);
+        Thread watcher = new Thread(() -> {
+            boolean seenFull[] = new boolean[n * n];
+            boolean last;
+            do {
+                last = !opening.get();
+                for (int site = 0 ; site < n * n ; site++) {
+                    boolean full = percolation.isFull(site / n + 1, site % n + 1);
+                    if (seenFull[site] && !full) {
+                        regressions.incrementAndGet();
+                    }
+                    seenFull[site] |= full;
+                }
+            } while (!last);
+        });
+        watcher.start();
+
+        long start = System.nanoTime();
+        IntStream.range(0, sites).parallel().forEach(i -> {
+            SplittableRandom random = new SplittableRandom(seed + i);
+            percolation.open(random.nextInt(n) + 1, random.nextInt(n) + 1);
+        });
+        long elapsed = System.nanoTime() - start;
+
+        opening.set(false);
+        watcher.join();
+
+        StdOut.println("open sites = " + percolation.numberOfOpenSites());
+        StdOut.println("percolates = " + percolation.percolates());
+        StdOut.println("elapsed ms = " + elapsed / 1000000);
+        StdOut.println("full sites found not full later = " + regressions.get());
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Admissible estimate of the number of moves left to reach the goal, used by {@link Solver}
+ * to order its search.
+ */
+public interface Heuristic {
+
+    /**
+     * Sum of Manhattan distances between tiles and goal, kept up to date by the board itself
+     */
+    Heuristic MANHATTAN = new Heuristic() {
+        @Override
+        public int estimate(Board board) {
+            return board.manhattan();
+        }
+    };
+
+    /**
+     * Manhattan distance plus linear conflicts
+     */
+    Heuristic LINEAR_CONFLICT = new LinearConflict();
+
+    /**
+     * Lower bound on the moves needed to solve board
+     *
+     * @param board
+     * @return
+     */
+    int estimate(Board board);
+}
@@ -0,0 +1,154 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Solver using iterative-deepening A*: depth-first searches bounded by moves + manhattan,
+ * raising the bound to the smallest value that exceeded it until the goal is found.
+ * The search moves tiles in place in a single array and undoes each move on the way back,
+ * keeping the Manhattan distance up to date by the one tile that moved, so memory is
+ * proportional to the solution depth instead of to the number of boards generated.
+ */
+public class IDASolver {
+
+    private static final int FOUND = -1;
+
+    private Board initial;
+    private boolean isSolvable;
+    private int moves = -1;
+    private List<Board> solution;
+
+    // Search state: the tiles, the blank and the directions taken from initial
+    private int N;
+    private int tiles[];
+    private int blank;
+    private int path[];
+
+    /**
+     * Find a solution to the initial board (using the IDA* algorithm)
+     *
+     * @param initial
+     */
+    public IDASolver(Board initial) {
+        if (initial == null) {
+            throw new IllegalArgumentException("Board cannot be null");
+        }
+
+        this.initial = initial;
+        this.isSolvable = initial.isSolvable();
+        if (!isSolvable) return;
+
+        this.N = initial.dimension();
+        this.tiles = new int[N * N];
+        for (int index = 0 ; index < N * N ; index++) {
+            tiles[index] = initial.tileAt(index);
+        }
+
+        this.blank = initial.blankIndex();
+        this.path = new int[Math.max(16, initial.manhattan())];
+
+        int bound = initial.manhattan();
+        while (bound != FOUND) {
+            bound = search(0, bound, initial.manhattan(), -1);
+        }
+    }
+
+    /**
+     * Depth-first search below the current board, reached in depth moves with Manhattan distance h
+     *
+     * @return FOUND, or the smallest moves + manhattan that exceeded bound
+     */
+    private int search(int depth, int bound, int h, int lastDirection) {
+        int f = depth + h;
+        if (f > bound) return f;
+        if (h == 0) {
+            moves = depth;
+            return FOUND;
+        }
+
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, 2 * depth);
+        }
+
+        int min = Integer.MAX_VALUE;
+        for (int direction = Board.UP ; direction <= Board.RIGHT ; direction++) {
+            // Moving straight back is never part of a shortest solution
+            if (direction == (lastDirection ^ 2)) continue;
+
+            int target = target(direction);
+            if (target < 0) continue;
+
+            int tile = tiles[target];
+            int delta = distance(tile - 1, blank) - distance(tile - 1, target);
+            int from = blank;
+
+            tiles[from] = tile;
+            tiles[target] = 0;
+            blank = target;
+            path[depth] = direction;
+
+            int result = search(depth + 1, bound, h + delta, direction);
+
+            tiles[target] = tile;
+            tiles[from] = 0;
+            blank = from;
+
+            if (result == FOUND) return FOUND;
+            min = Math.min(min, result);
+        }
+
+        return min;
+    }
+
+    private int target(int direction) {
+        switch (direction) {
+            case Board.UP:    return blank >= N ? blank - N : -1;
+            case Board.LEFT:  return blank % N != 0 ? blank - 1 : -1;
+            case Board.DOWN:  return blank < N * N - N ? blank + N : -1;
+            default:          return blank % N != N - 1 ? blank + 1 : -1;
+        }
+    }
+
+    private int distance(int first, int second) {
+        return Math.abs(first / N - second / N) + Math.abs(first % N - second % N);
+    }
+
+    /**
+     * Is the initial board solvable? (see below)
+     *
+     * @return boolean
+     */
+    public boolean isSolvable() {
+        return isSolvable;
+    }
+
+    /**
+     * Min number of moves to solve initial board
+     *
+     * @return int
+     */
+    public int moves() {
+        return moves;
+    }
+
+    /**
+     * Sequence of boards in a shortest solution, rebuilt from the moves on first use
+     *
+     * @return
+     */
+    public Iterable<Board> solution() {
+        if (!isSolvable) return null;
+
+        if (solution == null) {
+            solution = new ArrayList<>(moves + 1);
+            Board board = initial;
+            solution.add(board);
+            for (int i = 0 ; i < moves ; i++) {
+                board = board.move(path[i]);
+                solution.add(board);
+            }
+        }
+
+        return new ArrayList<>(solution);
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * Topology of a percolation lattice with n sites along every axis, laid out in a flat array
+ * padded with a ring of always blocked sites. Each topology is a table of neighbour offsets
+ * into that array, so engines visit the neighbours of any site in one branch-light loop
+ * without bounds checks. The last axis runs from the top layer to the bottom layer.
+ * Offsets come in pairs, offset 2k + 1 being the reverse of offset 2k.
+ */
+public final class Lattice {
+
+    // Layer flags, also used as the component flags of the engines
+    static final byte TOP_LAYER = 1;
+    static final byte BOTTOM_LAYER = 2;
+
+    private final String name;
+    private final int dimension;
+    private final int strides[];
+    private final int neighbourOffsets[];
+    private final int sites;
+    private final int paddedSize;
+    private final int topLayerEnd;
+    private final int bottomLayerStart;
+
+    private Lattice(String name, int dimension, int axes, int[][] neighbourSteps) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("n should be greater than 0");
+        }
+
+        long paddedSize = 1;
+        long sites = 1;
+        this.strides = new int[axes];
+        for (int axis = 0 ; axis < axes ; axis++) {
+            strides[axis] = (int) paddedSize;
+            paddedSize *= dimension + 2;
+            sites *= dimension;
+        }
+
+        if (paddedSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("n = " + dimension + " is too large for a " + name + " lattice");
+        }
+
+        this.name = name;
+        this.dimension = dimension;
+        this.sites = (int) sites;
+        this.paddedSize = (int) paddedSize;
+
+        this.neighbourOffsets = new int[neighbourSteps.length];
+        for (int i = 0 ; i < neighbourSteps.length ; i++) {
+            for (int axis = 0 ; axis < axes ; axis++) {
+                neighbourOffsets[i] += neighbourSteps[i][axis] * strides[axis];
+            }
+        }
+
+        int layerStride = strides[axes - 1];
+        this.topLayerEnd = 2 * layerStride;
+        this.bottomLayerStart = dimension * layerStride;
+    }
+
+    /**
+     * n-by-n square lattice, four neighbours per site
+     *
+     * @param n
+     * @return
+     */
+    public static Lattice square(int n) {
+        return new Lattice("square", n, 2, new int[][] {
+                { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } });
+    }
+
+    /**
+     * n-by-n triangular lattice, stored as a sheared square lattice, six neighbours per site
+     *
+     * @param n
+     * @return
+     */
+    public static Lattice triangular(int n) {
+        return new Lattice("triangular", n, 2, new int[][] {
+                { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }, { 1, -1 }, { -1, 1 } });
+    }
+
+    /**
+     * n-by-n-by-n simple cubic lattice, six neighbours per site
+     *
+     * @param n
+     * @return
+     */
+    public static Lattice cubic(int n) {
+        return new Lattice("cubic", n, 3, new int[][] {
+                { 1, 0, 0 }, { -1, 0, 0 }, { 0, 1, 0 }, { 0, -1, 0 }, { 0, 0, 1 }, { 0, 0, -1 } });
+    }
+
+    /**
+     * Number of sites along each axis
+     *
+     * @return
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Number of sites, not counting the padding
+     *
+     * @return
+     */
+    public int sites() {
+        return sites;
+    }
+
+    /**
+     * Number of neighbours of a site
+     *
+     * @return
+     */
+    public int degree() {
+        return neighbourOffsets.length;
+    }
+
+    /**
+     * Position in the padded array of site, sites being numbered with the first axis varying fastest
+     *
+     * @param site
+     * @return
+     */
+    public int paddedIndex(int site) {
+        int paddedIndex = 0;
+        for (int axis = 0 ; axis < strides.length ; axis++) {
+            paddedIndex += (site % dimension + 1) * strides[axis];
+            site /= dimension;
+        }
+
+        return paddedIndex;
+    }
+
+    /**
+     * Position in the padded array of the site at 1-based (row, col) of a two dimensional lattice
+     */
+    int paddedIndex(int row, int col) {
+        return row * strides[1] + col;
+    }
+
+    int paddedSize() {
+        return paddedSize;
+    }
+
+    int[] neighbourOffsets() {
+        return neighbourOffsets;
+    }
+
+    /**
+     * Flags of the layers the padded site belongs to
+     */
+    byte layerStatus(int paddedIndex) {
+        byte status = 0;
+        if (paddedIndex < topLayerEnd) {
+            status |= TOP_LAYER;
+        }
+
+        if (paddedIndex >= bottomLayerStart) {
+            status |= BOTTOM_LAYER;
+        }
+
+        return status;
+    }
+
+    /**
+     * Which entries of the padded array are sites rather than padding
+     */
+    boolean[] interiorMask() {
+        boolean interior[] = new boolean[paddedSize];
+        for (int site = 0 ; site < sites ; site += dimension) {
+            int paddedIndex = paddedIndex(site);
+            for (int i = 0 ; i < dimension ; i++) {
+                interior[paddedIndex + i] = true;
+            }
+        }
+
+        return interior;
+    }
+
+    public String toString() {
+        return name + " lattice, n = " + dimension;
+    }
+}
@@ -0,0 +1,255 @@
+import java.util.Arrays;
+
+/**
+ * Site percolation on any {@link Lattice}. Sites are numbered from 0 to lattice.sites() - 1,
+ * the first axis varying fastest, and live in the lattice's padded flat array, so opening a
+ * site is one loop over the lattice's neighbour offset table whatever the topology.
+ */
+public class LatticePercolation implements PercolationSystem {
+
+    private static final byte CONNECTED_TOP = Lattice.TOP_LAYER;
+    private static final byte CONNECTED_BOTH = Lattice.TOP_LAYER | Lattice.BOTTOM_LAYER;
+
+    private Lattice lattice;
+    private UnionFind unionFind;
+    private byte rootStatus[];
+    private int openEpoch[];
+    private int epoch;
+    private int neighbourOffsets[];
+    private int openSiteCount;
+    private int largestClusterSize;
+
+    // Scratch for fullMask: sites reached by its flood fill carry the current stamp
+    private int fullStamp[];
+    private int stamp;
+    private int stack[];
+    private boolean percolates;
+
+    /**
+     * Create the lattice with all sites blocked
+     *
+     * @param lattice
+     */
+    public LatticePercolation(Lattice lattice) {
+        if (lattice == null) {
+            throw new IllegalArgumentException("Lattice cannot be null");
+        }
+
+        this.lattice = lattice;
+        this.unionFind = new UnionFind(lattice.paddedSize());
+        this.rootStatus = new byte[lattice.paddedSize()];
+        this.openEpoch = new int[lattice.paddedSize()];
+        this.epoch = 1;
+        this.neighbourOffsets = lattice.neighbourOffsets();
+    }
+
+    /**
+     * Open site if it is not open already
+     *
+     * @param site
+     * @return true if the site was blocked
+     */
+    public boolean open(int site) {
+        validate(site);
+        return openPadded(lattice.paddedIndex(site));
+    }
+
+    boolean openPadded(int siteMapping) {
+        if (openEpoch[siteMapping] == epoch) return false;
+
+        openEpoch[siteMapping] = epoch;
+        unionFind.makeSet(siteMapping);
+        openSiteCount++;
+
+        byte status = lattice.layerStatus(siteMapping);
+        int root = siteMapping;
+        for (int offset : neighbourOffsets) {
+            int neighbourMapping = siteMapping + offset;
+            if (openEpoch[neighbourMapping] != epoch) continue;
+
+            int neighbourRoot = unionFind.find(neighbourMapping);
+            status |= rootStatus[neighbourRoot];
+            root = unionFind.unionRoots(root, neighbourRoot);
+        }
+
+        rootStatus[root] = status;
+        if (status == CONNECTED_BOTH) {
+            percolates = true;
+        }
+
+        largestClusterSize = Math.max(largestClusterSize, unionFind.size(root));
+        return true;
+    }
+
+    /**
+     * Block every site again, reusing the arrays of this lattice.
+     * A site is open only if it was opened in the current epoch, and opening a site resets its
+     * union-find entry, so moving to the next epoch is all it takes.
+     */
+    public void reset() {
+        openSiteCount = 0;
+        largestClusterSize = 0;
+        percolates = false;
+
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(openEpoch, 0);
+            epoch = 0;
+        }
+
+        epoch++;
+    }
+
+    private void validate(int site) {
+        if (site < 0 || site >= lattice.sites())
+            throw new IllegalArgumentException("site = " + site + " is not in the permitted range.");
+    }
+
+    /**
+     * Is site open ?
+     *
+     * @param site
+     * @return
+     */
+    public boolean isOpen(int site) {
+        validate(site);
+        return isOpenPadded(lattice.paddedIndex(site));
+    }
+
+    boolean isOpenPadded(int siteMapping) {
+        return openEpoch[siteMapping] == epoch;
+    }
+
+    /**
+     * Is site full ?
+     *
+     * @param site
+     * @return
+     */
+    public boolean isFull(int site) {
+        validate(site);
+        return isFullPadded(lattice.paddedIndex(site));
+    }
+
+    boolean isFullPadded(int siteMapping) {
+        if (openEpoch[siteMapping] != epoch) return false;
+
+        return (rootStatus[unionFind.find(siteMapping)] & CONNECTED_TOP) != 0;
+    }
+
+    /**
+     * All open sites as a bitset, site i being bit i
+     *
+     * @return
+     */
+    public long[] openMask() {
+        return mask(false);
+    }
+
+    /**
+     * All full sites as a bitset, site i being bit i.
+     * The full sites are flooded from the open sites of the top layer through open neighbours,
+     * so no root is looked up and each full site is visited once.
+     *
+     * @return
+     */
+    public long[] fullMask() {
+        if (fullStamp == null) {
+            fullStamp = new int[lattice.paddedSize()];
+            stack = new int[lattice.paddedSize()];
+        }
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(fullStamp, 0);
+            stamp = 0;
+        }
+        stamp++;
+
+        int n = lattice.dimension();
+        int size = 0;
+        for (int site = 0 ; site < lattice.sites() ; site += n) {
+            int siteMapping = lattice.paddedIndex(site);
+            // The top layer comes first in the padded array
+            if ((lattice.layerStatus(siteMapping) & CONNECTED_TOP) == 0) break;
+
+            for (int bit = site ; bit < site + n ; bit++, siteMapping++) {
+                if (isOpenPadded(siteMapping) && fullStamp[siteMapping] != stamp) {
+                    fullStamp[siteMapping] = stamp;
+                    stack[size++] = siteMapping;
+                }
+            }
+        }
+
+        while (size > 0) {
+            int siteMapping = stack[--size];
+            for (int offset : neighbourOffsets) {
+                int neighbourMapping = siteMapping + offset;
+                if (isOpenPadded(neighbourMapping) && fullStamp[neighbourMapping] != stamp) {
+                    fullStamp[neighbourMapping] = stamp;
+                    stack[size++] = neighbourMapping;
+                }
+            }
+        }
+
+        return mask(true);
+    }
+
+    private long[] mask(boolean full) {
+        int n = lattice.dimension();
+        long mask[] = new long[(int) (((long) lattice.sites() + 63) >>> 6)];
+        for (int site = 0 ; site < lattice.sites() ; site += n) {
+            int siteMapping = lattice.paddedIndex(site);
+            for (int bit = site ; bit < site + n ; bit++, siteMapping++) {
+                if (full ? fullStamp[siteMapping] == stamp : isOpenPadded(siteMapping)) {
+                    mask[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * The lattice
+     *
+     * @return
+     */
+    public Lattice lattice() {
+        return lattice;
+    }
+
+    /**
+     * Number of open sites
+     *
+     * @return
+     */
+    public int numberOfOpenSites() {
+        return openSiteCount;
+    }
+
+    /**
+     * Number of sites in the largest cluster of open sites
+     *
+     * @return
+     */
+    public int largestClusterSize() {
+        return largestClusterSize;
+    }
+
+    /**
+     * Does the system percolate ?
+     *
+     * @return
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    @Override
+    public int elements() {
+        return lattice.sites();
+    }
+
+    @Override
+    public int openableElements() {
+        return lattice.sites();
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Manhattan distance plus linear conflicts. Tiles that sit in their goal row but in the wrong
+ * order relative to each other cannot all move along the row; at least every tile outside a
+ * longest correctly ordered subsequence has to leave the row and come back, two extra moves
+ * each. The same holds for columns, and rows and columns add up.
+ */
+public class LinearConflict implements Heuristic {
+
+    // Goals of the tiles of the row or column being scanned, grown to the board size on first use.
+    // The heuristic is stateless apart from this buffer, so each thread gets its own and a single
+    // LinearConflict can be handed to every worker of a ParallelSolver.
+    private final ThreadLocal<int[]> scratch = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[0];
+        }
+    };
+
+    @Override
+    public int estimate(Board board) {
+        int n = board.dimension();
+        int goals[] = scratch.get();
+        if (goals.length < n) {
+            goals = new int[n];
+            scratch.set(goals);
+        }
+
+        int conflicts = 0;
+
+        for (int line = 0 ; line < n ; line++) {
+            // Goal columns of the tiles of row line that belong in that row, left to right
+            int count = 0;
+            for (int col = 0 ; col < n ; col++) {
+                int tile = board.tileAt(line * n + col);
+                if (tile != 0 && (tile - 1) / n == line) {
+                    goals[count++] = (tile - 1) % n;
+                }
+            }
+            conflicts += count - longestIncreasing(goals, count);
+
+            // Goal rows of the tiles of column line that belong in that column, top to bottom
+            count = 0;
+            for (int row = 0 ; row < n ; row++) {
+                int tile = board.tileAt(row * n + line);
+                if (tile != 0 && (tile - 1) % n == line) {
+                    goals[count++] = (tile - 1) / n;
+                }
+            }
+            conflicts += count - longestIncreasing(goals, count);
+        }
+
+        return board.manhattan() + 2 * conflicts;
+    }
+
+    /**
+     * Length of the longest increasing subsequence of the first count values, patience sorting.
+     * The piles never outnumber the values read, so their tails overwrite values in place.
+     */
+    private int longestIncreasing(int[] values, int count) {
+        int tails[] = values;
+        int length = 0;
+        for (int i = 0 ; i < count ; i++) {
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (tails[mid] < values[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            // values[i] is read before the write, as lo <= length <= i
+            tails[lo] = values[i];
+            if (lo == length) {
+                length++;
+            }
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,457 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.Arrays;
+
+/**
+ * n-by-n percolation grid where sites can be closed again, answered offline.
+ * A sequence of open and close events is recorded, together with fullness queries,
+ * then solve() answers percolates() after every event and every fullness query in
+ * O((n^2 + e) log e log n) overall for e events, without ever rebuilding the grid.
+ * Each open site and each pair of open neighbours is alive during an interval of time;
+ * the intervals are spread over a segment tree on time and a depth-first walk of the tree
+ * applies them to a union-find without path compression, rolling them back on the way up.
+ */
+public class OfflinePercolation {
+
+    private static final byte CONNECTED_TOP = 1;
+    private static final byte CONNECTED_BOTTOM = 2;
+    private static final byte CONNECTED_BOTH = CONNECTED_TOP | CONNECTED_BOTTOM;
+
+    // Kinds of operation, stored as site * 3 + kind
+    private static final int LINK_RIGHT = 0;
+    private static final int LINK_DOWN = 1;
+    private static final int ACTIVATE = 2;
+
+    private int dimension;
+    private int sites;
+
+    // Recorded events, site * 2 + 1 for an open and site * 2 for a close
+    private int events[];
+    private int eventCount;
+    private boolean isOpen[];
+
+    // Recorded fullness queries, against the state after queryTime[i] events
+    private int querySite[];
+    private int queryTime[];
+    private boolean querySiteOpen[];
+    private int queryCount;
+
+    private boolean percolates[];
+    private boolean isFull[];
+    private boolean solved;
+
+    // Segment tree on time, holding the operations alive over each node's whole range
+    private int nodeOps[][];
+    private int nodeOpCount[];
+
+    // Union-find with rollback
+    private int parent[];
+    private int size[];
+    private byte rootStatus[];
+    private int percolatingRoots;
+    private int historyRoot[];
+    private int historyChild[];
+    private int historySize[];
+    private byte historyStatus[];
+    private int historyPercolatingRoots[];
+    private int historyCount;
+
+    // Fullness queries grouped by time
+    private int firstQuery[];
+    private int nextQuery[];
+
+    /**
+     * Create n-by-n grid, with all sites blocked
+     *
+     * @param n
+     */
+    public OfflinePercolation(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n should be greater than 0");
+        }
+
+        this.dimension = n;
+        this.sites = n * n;
+        this.events = new int[16];
+        this.isOpen = new boolean[sites];
+        this.querySite = new int[16];
+        this.queryTime = new int[16];
+        this.querySiteOpen = new boolean[16];
+    }
+
+    /**
+     * Record opening site (row, col)
+     *
+     * @param row
+     * @param col
+     */
+    public void open(int row, int col) {
+        int site = site(row, col);
+        isOpen[site] = true;
+        record(2 * site + 1);
+    }
+
+    /**
+     * Record closing site (row, col)
+     *
+     * @param row
+     * @param col
+     */
+    public void close(int row, int col) {
+        int site = site(row, col);
+        isOpen[site] = false;
+        record(2 * site);
+    }
+
+    private void record(int event) {
+        if (eventCount == events.length) {
+            events = Arrays.copyOf(events, 2 * eventCount);
+        }
+
+        events[eventCount++] = event;
+        solved = false;
+    }
+
+    /**
+     * Record a query of whether site (row, col) is full after the events recorded so far
+     *
+     * @param row
+     * @param col
+     * @return id of the query, to pass to {@link #isFull(int)}
+     */
+    public int queryFull(int row, int col) {
+        int site = site(row, col);
+        if (queryCount == querySite.length) {
+            querySite = Arrays.copyOf(querySite, 2 * queryCount);
+            queryTime = Arrays.copyOf(queryTime, 2 * queryCount);
+            querySiteOpen = Arrays.copyOf(querySiteOpen, 2 * queryCount);
+        }
+
+        querySite[queryCount] = site;
+        queryTime[queryCount] = eventCount;
+        querySiteOpen[queryCount] = isOpen[site];
+        solved = false;
+        return queryCount++;
+    }
+
+    /**
+     * Number of events recorded
+     *
+     * @return
+     */
+    public int events() {
+        return eventCount;
+    }
+
+    /**
+     * Does the system percolate after the first time events ?
+     *
+     * @param time
+     * @return
+     */
+    public boolean percolates(int time) {
+        if (time < 0 || time > eventCount) {
+            throw new IllegalArgumentException("time = " + time + " is not in the permitted range.");
+        }
+
+        solve();
+        return percolates[time];
+    }
+
+    /**
+     * Answer of a fullness query
+     *
+     * @param query
+     * @return
+     */
+    public boolean isFull(int query) {
+        if (query < 0 || query >= queryCount) {
+            throw new IllegalArgumentException("query = " + query + " is not in the permitted range.");
+        }
+
+        solve();
+        return isFull[query];
+    }
+
+    /**
+     * Answer every query recorded so far, does nothing if nothing was recorded since the last call
+     */
+    public void solve() {
+        if (solved) return;
+
+        int times = eventCount + 1;
+        nodeOps = new int[4 * times][];
+        nodeOpCount = new int[4 * times];
+        buildIntervals(times);
+
+        parent = new int[sites];
+        size = new int[sites];
+        rootStatus = new byte[sites];
+        for (int site = 0 ; site < sites ; site++) {
+            parent[site] = site;
+            size[site] = 1;
+        }
+
+        percolatingRoots = 0;
+        historyRoot = new int[16];
+        historyChild = new int[16];
+        historySize = new int[16];
+        historyStatus = new byte[16];
+        historyPercolatingRoots = new int[16];
+        historyCount = 0;
+
+        firstQuery = new int[times];
+        nextQuery = new int[queryCount];
+        Arrays.fill(firstQuery, -1);
+        for (int query = queryCount - 1 ; query >= 0 ; query--) {
+            nextQuery[query] = firstQuery[queryTime[query]];
+            firstQuery[queryTime[query]] = query;
+        }
+
+        percolates = new boolean[times];
+        isFull = new boolean[queryCount];
+        walk(1, 0, times);
+
+        nodeOps = null;
+        nodeOpCount = null;
+        solved = true;
+    }
+
+    /**
+     * Replay the events to find when each site and each pair of neighbours is open, time t
+     * being the state after the first t events
+     */
+    private void buildIntervals(int times) {
+        boolean replayOpen[] = new boolean[sites];
+        int openSince[] = new int[sites];
+
+        for (int i = 0 ; i < eventCount ; i++) {
+            int site = events[i] >>> 1;
+            boolean opening = (events[i] & 1) == 1;
+            if (replayOpen[site] == opening) continue;
+
+            int time = i + 1;
+            if (opening) {
+                replayOpen[site] = true;
+                openSince[site] = time;
+                continue;
+            }
+
+            int row = site / dimension;
+            int col = site % dimension;
+            if (col + 1 < dimension && replayOpen[site + 1]) {
+                addLink(site, LINK_RIGHT, Math.max(openSince[site], openSince[site + 1]), time, times);
+            }
+            if (col > 0 && replayOpen[site - 1]) {
+                addLink(site - 1, LINK_RIGHT, Math.max(openSince[site], openSince[site - 1]), time, times);
+            }
+            if (row + 1 < dimension && replayOpen[site + dimension]) {
+                addLink(site, LINK_DOWN, Math.max(openSince[site], openSince[site + dimension]), time, times);
+            }
+            if (row > 0 && replayOpen[site - dimension]) {
+                addLink(site - dimension, LINK_DOWN, Math.max(openSince[site], openSince[site - dimension]), time, times);
+            }
+
+            add(1, 0, times, openSince[site], time, 3 * site + ACTIVATE);
+            replayOpen[site] = false;
+        }
+
+        for (int site = 0 ; site < sites ; site++) {
+            if (!replayOpen[site]) continue;
+
+            if (site % dimension + 1 < dimension && replayOpen[site + 1]) {
+                addLink(site, LINK_RIGHT, Math.max(openSince[site], openSince[site + 1]), times, times);
+            }
+            if (site + dimension < sites && replayOpen[site + dimension]) {
+                addLink(site, LINK_DOWN, Math.max(openSince[site], openSince[site + dimension]), times, times);
+            }
+
+            add(1, 0, times, openSince[site], times, 3 * site + ACTIVATE);
+        }
+    }
+
+    private void addLink(int site, int kind, int from, int to, int times) {
+        if (from < to) {
+            add(1, 0, times, from, to, 3 * site + kind);
+        }
+    }
+
+    /**
+     * Add op to the nodes covering [from, to), node covering [lo, hi)
+     */
+    private void add(int node, int lo, int hi, int from, int to, int op) {
+        if (to <= lo || hi <= from) return;
+
+        if (from <= lo && hi <= to) {
+            if (nodeOps[node] == null) {
+                nodeOps[node] = new int[4];
+            } else if (nodeOpCount[node] == nodeOps[node].length) {
+                nodeOps[node] = Arrays.copyOf(nodeOps[node], 2 * nodeOpCount[node]);
+            }
+
+            nodeOps[node][nodeOpCount[node]++] = op;
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        add(2 * node, lo, mid, from, to, op);
+        add(2 * node + 1, mid, hi, from, to, op);
+    }
+
+    private void walk(int node, int lo, int hi) {
+        int mark = historyCount;
+        for (int i = 0 ; i < nodeOpCount[node] ; i++) {
+            apply(nodeOps[node][i]);
+        }
+
+        if (hi - lo == 1) {
+            percolates[lo] = percolatingRoots > 0;
+            for (int query = firstQuery[lo] ; query >= 0 ; query = nextQuery[query]) {
+                isFull[query] = querySiteOpen[query] && (rootStatus[find(querySite[query])] & CONNECTED_TOP) != 0;
+            }
+        } else {
+            int mid = (lo + hi) >>> 1;
+            walk(2 * node, lo, mid);
+            walk(2 * node + 1, mid, hi);
+        }
+
+        while (historyCount > mark) {
+            rollback();
+        }
+    }
+
+    private void apply(int op) {
+        int site = op / 3;
+        int kind = op % 3;
+        if (kind == ACTIVATE) {
+            activate(site);
+        } else {
+            union(site, kind == LINK_RIGHT ? site + 1 : site + dimension);
+        }
+    }
+
+    private void activate(int site) {
+        int root = find(site);
+        byte status = (byte) (rootStatus[root] | layerStatus(site));
+        if (status == rootStatus[root]) return;
+
+        save(root, -1);
+        if (status == CONNECTED_BOTH) {
+            percolatingRoots++;
+        }
+
+        rootStatus[root] = status;
+    }
+
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ) return;
+
+        if (size[rootP] < size[rootQ]) {
+            int temp = rootP;
+            rootP = rootQ;
+            rootQ = temp;
+        }
+
+        save(rootP, rootQ);
+        byte status = (byte) (rootStatus[rootP] | rootStatus[rootQ]);
+        if (rootStatus[rootP] == CONNECTED_BOTH) percolatingRoots--;
+        if (rootStatus[rootQ] == CONNECTED_BOTH) percolatingRoots--;
+        if (status == CONNECTED_BOTH) percolatingRoots++;
+
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        rootStatus[rootP] = status;
+    }
+
+    private void save(int root, int child) {
+        if (historyCount == historyRoot.length) {
+            int capacity = 2 * historyCount;
+            historyRoot = Arrays.copyOf(historyRoot, capacity);
+            historyChild = Arrays.copyOf(historyChild, capacity);
+            historySize = Arrays.copyOf(historySize, capacity);
+            historyStatus = Arrays.copyOf(historyStatus, capacity);
+            historyPercolatingRoots = Arrays.copyOf(historyPercolatingRoots, capacity);
+        }
+
+        historyRoot[historyCount] = root;
+        historyChild[historyCount] = child;
+        historySize[historyCount] = size[root];
+        historyStatus[historyCount] = rootStatus[root];
+        historyPercolatingRoots[historyCount] = percolatingRoots;
+        historyCount++;
+    }
+
+    private void rollback() {
+        historyCount--;
+        int root = historyRoot[historyCount];
+        int child = historyChild[historyCount];
+        if (child >= 0) {
+            parent[child] = child;
+        }
+
+        size[root] = historySize[historyCount];
+        rootStatus[root] = historyStatus[historyCount];
+        percolatingRoots = historyPercolatingRoots[historyCount];
+    }
+
+    private int find(int site) {
+        while (site != parent[site]) {
+            site = parent[site];
+        }
+
+        return site;
+    }
+
+    private byte layerStatus(int site) {
+        byte status = 0;
+        if (site < dimension) {
+            status |= CONNECTED_TOP;
+        }
+
+        if (site >= sites - dimension) {
+            status |= CONNECTED_BOTTOM;
+        }
+
+        return status;
+    }
+
+    private int site(int row, int col) {
+        if (row < 1 || row > dimension || col < 1 || col > dimension)
+            throw new IllegalArgumentException("row = " + row + ", col = " + col + " are not in the permitted range.");
+
+        return (row - 1) * dimension + (col - 1);
+    }
+
+    /**
+     * Test client, opens and closes random sites and counts the events after which the grid percolates
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int events = Integer.parseInt(args[1]);
+
+        OfflinePercolation percolation = new OfflinePercolation(n);
+        for (int i = 0 ; i < events ; i++) {
+            int row = StdRandom.uniform(n) + 1;
+            int col = StdRandom.uniform(n) + 1;
+            if (StdRandom.uniform(10) < 7) {
+                percolation.open(row, col);
+            } else {
+                percolation.close(row, col);
+            }
+        }
+
+        int percolating = 0;
+        for (int time = 0 ; time <= events ; time++) {
+            if (percolation.percolates(time)) {
+                percolating++;
+            }
+        }
+
+        StdOut.println(percolating + " of " + (events + 1) + " states percolate");
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Solver using hash-distributed A* (HDA*). Every board is owned by one worker, chosen by a hash
+ * of its tiles, and only its owner keeps it in an open and a closed list, so duplicates are
+ * detected without any shared table. Neighbors are sent to their owners in batches through
+ * lock-free queues. Workers stop expanding boards whose priority cannot beat the best solution
+ * found so far, and the search ends once no worker has work and no batch is in flight, which
+ * keeps the solution a shortest one.
+ */
+public class ParallelSolver {
+
+    private static final int BATCH = 64;
+
+    // Expansions between two flushes of the partial batches
+    private static final int ROUND = 32;
+
+    // Bounds on how long an idle worker parks before looking at its inbox again; senders also wake it
+    private static final long MIN_PARK_NANOS = 1_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    private List<Board> solution;
+    private boolean isSolvable;
+    private Heuristic heuristic;
+
+    private static class Node {
+        final Board board;
+        final int moves;
+        final Node parent;
+        final int priority;
+
+        Node(Board board, int moves, Node parent, int priority) {
+            this.board = board;
+            this.moves = moves;
+            this.parent = parent;
+            this.priority = priority;
+        }
+    }
+
+    // Shared search state
+    private Worker workers[];
+    private final AtomicReference<Node> best = new AtomicReference<>();
+
+    // Batches in flight plus workers holding boards; the search is over when it drops to 0
+    private final AtomicLong outstanding = new AtomicLong();
+    private volatile boolean aborted;
+
+    /**
+     * Find a solution to the initial board with one worker per available processor
+     *
+     * @param initial
+     */
+    public ParallelSolver(Board initial) {
+        this(initial, Heuristic.MANHATTAN, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Find a solution to the initial board with the given number of worker threads. Workers wait
+     * on each other, so each runs on a thread of its own rather than on a shared executor.
+     *
+     * @param initial
+     * @param heuristic
+     * @param threads
+     */
+    public ParallelSolver(Board initial, Heuristic heuristic, int threads) {
+        if (initial == null) {
+            throw new IllegalArgumentException("Board cannot be null");
+        }
+        if (heuristic == null) {
+            throw new IllegalArgumentException("Heuristic cannot be null");
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads should be greater than 0");
+        }
+
+        this.heuristic = heuristic;
+        this.isSolvable = initial.isSolvable();
+        if (!isSolvable) {
+            generateSolution(null);
+            return;
+        }
+
+        workers = new Worker[threads];
+        for (int w = 0 ; w < threads ; w++) {
+            workers[w] = new Worker();
+        }
+
+        Node root = new Node(initial, 0, null, heuristic.estimate(initial));
+        outstanding.set(1);
+        workers[owner(initial)].inbox.add(new Node[] { root });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(new ArrayList<Callable<Void>>(Arrays.asList(workers)))) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the search", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        } finally {
+            aborted = true;
+            executor.shutdownNow();
+        }
+
+        generateSolution(best.get());
+    }
+
+    private int owner(Board board) {
+        return (int) ((Board.mix(board.key()) >>> 1) % workers.length);
+    }
+
+    private int bestMoves() {
+        Node goal = best.get();
+        return goal == null ? Integer.MAX_VALUE : goal.moves;
+    }
+
+    /**
+     * One worker: the boards it owns, and the neighbors it generated for each other worker
+     * not yet sent
+     */
+    private class Worker implements Callable<Void> {
+        final ConcurrentLinkedQueue<Node[]> inbox = new ConcurrentLinkedQueue<>();
+
+        private final BucketQueue<Node> open = new BucketQueue<>();
+        private final TranspositionTable closed = new TranspositionTable();
+        private Node outbox[][];
+        private int outboxCounts[];
+        private boolean busy;
+        private long parkNanos = MIN_PARK_NANOS;
+        volatile Thread thread;
+
+        @Override
+        public Void call() {
+            thread = Thread.currentThread();
+            outbox = new Node[workers.length][BATCH];
+            outboxCounts = new int[workers.length];
+            try {
+                while (!aborted && outstanding.get() > 0) {
+                    boolean received = receive();
+                    int expanded = 0;
+                    while (expanded < ROUND && expand()) {
+                        expanded++;
+                    }
+
+                    // Whatever the round generated for other workers goes out now rather than
+                    // waiting for full batches, so they never starve behind a busy worker
+                    flush();
+                    if (received || expanded > 0) {
+                        parkNanos = MIN_PARK_NANOS;
+                    } else {
+                        idle();
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                aborted = true;
+                wakeAll();
+                throw e;
+            }
+
+            return null;
+        }
+
+        /**
+         * Move the batches received into the open list
+         */
+        private boolean receive() {
+            boolean received = false;
+            for (Node batch[] = inbox.poll() ; batch != null ; batch = inbox.poll()) {
+                // An idle worker takes over the count of the batch, a busy one is counted already
+                if (busy) {
+                    outstanding.decrementAndGet();
+                }
+                busy = true;
+                received = true;
+
+                for (Node node : batch) {
+                    if (node.priority < bestMoves() && closed.offer(node.board, node.moves)) {
+                        open.insert(node, node.priority);
+                    }
+                }
+            }
+
+            return received;
+        }
+
+        /**
+         * Expand the best open board that can still improve on the best solution
+         */
+        private boolean expand() {
+            while (!open.isEmpty()) {
+                Node curr = open.delMin();
+                if (curr.moves > closed.get(curr.board)) continue;
+                if (curr.priority >= bestMoves()) {
+                    // Every other open board is at least as bad
+                    while (!open.isEmpty()) open.delMin();
+                    return false;
+                }
+
+                if (curr.board.isGoal()) {
+                    offerSolution(curr);
+                    continue;
+                }
+
+                for (Board neighbor : curr.board.neighbors()) {
+                    Node next = new Node(neighbor, curr.moves + 1, curr, curr.moves + 1 + heuristic.estimate(neighbor));
+                    if (next.priority >= bestMoves()) continue;
+
+                    int owner = owner(neighbor);
+                    if (workers[owner] == this) {
+                        if (closed.offer(neighbor, next.moves)) {
+                            open.insert(next, next.priority);
+                        }
+                    } else {
+                        outbox[owner][outboxCounts[owner]++] = next;
+                        if (outboxCounts[owner] == BATCH) {
+                            send(owner);
+                        }
+                    }
+                }
+
+                return true;
+            }
+
+            return false;
+        }
+
+        private void offerSolution(Node goal) {
+            Node current = best.get();
+            while ((current == null || goal.moves < current.moves) && !best.compareAndSet(current, goal)) {
+                current = best.get();
+            }
+        }
+
+        /**
+         * Out of boards, with nothing pending: stop counting as busy, or wait for a batch
+         */
+        private void idle() {
+            if (busy) {
+                busy = false;
+                if (outstanding.decrementAndGet() == 0) {
+                    wakeAll();
+                }
+            } else {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(2 * parkNanos, MAX_PARK_NANOS);
+            }
+        }
+
+        private void flush() {
+            for (int owner = 0 ; owner < workers.length ; owner++) {
+                if (outboxCounts[owner] > 0) {
+                    send(owner);
+                }
+            }
+        }
+
+        private void send(int owner) {
+            Node batch[] = Arrays.copyOf(outbox[owner], outboxCounts[owner]);
+            Arrays.fill(outbox[owner], null);
+            outboxCounts[owner] = 0;
+
+            outstanding.incrementAndGet();
+            workers[owner].inbox.add(batch);
+            workers[owner].wake();
+        }
+
+        void wake() {
+            Thread parked = thread;
+            if (parked != null) {
+                LockSupport.unpark(parked);
+            }
+        }
+    }
+
+    private void wakeAll() {
+        for (Worker worker : workers) {
+            worker.wake();
+        }
+    }
+
+    private void generateSolution(Node goal) {
+        solution = new ArrayList<>();
+        while (goal != null) {
+            solution.add(goal.board);
+            goal = goal.parent;
+        }
+
+        Collections.reverse(solution);
+    }
+
+    /**
+     * Is the initial board solvable?
+     *
+     * @return boolean
+     */
+    public boolean isSolvable() {
+        return isSolvable;
+    }
+
+    /**
+     * Min number of moves to solve initial board
+     *
+     * @return int
+     */
+    public int moves() {
+        return solution.size() - 1;
+    }
+
+    /**
+     * Sequence of boards in a shortest solution
+     *
+     * @return
+     */
+    public Iterable<Board> solution() {
+        if (!isSolvable) return null;
+
+        return new ArrayList<>(solution);
+    }
+}
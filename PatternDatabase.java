@@ -0,0 +1,399 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.BufferedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Additive disjoint pattern databases. The tiles are split into groups and, for every placement
+ * of a group's tiles, a table holds the fewest moves of those tiles needed to bring them home,
+ * moves of the other tiles being free. As no move is counted by two groups, the values of the
+ * groups add up to an admissible estimate much closer to the true distance than Manhattan.
+ * Tables are built once by a breadth-first search back from the goal, saved to a compact binary
+ * file and memory-mapped when loaded.
+ */
+public class PatternDatabase implements Heuristic {
+
+    private static final int MAGIC = 0x50444231;
+
+    // Table entry of a placement the search never reached
+    private static final int UNREACHED = 0xFF;
+
+    private int N;
+    private int groups[][];
+    private ByteBuffer tables[];
+
+    // Cell of each tile on the board being estimated, filled in before ranking every group.
+    // The tables, over ten megabytes for 4-by-4, are shared read-only, so only this small index
+    // is kept per thread.
+    private final ThreadLocal<int[]> positions = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[N * N];
+        }
+    };
+
+    private PatternDatabase(int n, int[][] groups, ByteBuffer[] tables) {
+        this.N = n;
+        this.groups = groups;
+        this.tables = tables;
+    }
+
+    /**
+     * Build the databases of the default groups: 4 and 4 tiles for 3-by-3, 6, 6 and 3 tiles for 4-by-4
+     *
+     * @param n
+     * @return
+     */
+    public static PatternDatabase build(int n) {
+        if (n == 3) {
+            return build(3, new int[][] { { 1, 2, 3, 4 }, { 5, 6, 7, 8 } });
+        }
+        if (n == 4) {
+            return build(4, new int[][] { { 1, 5, 6, 9, 10, 13 }, { 7, 8, 11, 12, 14, 15 }, { 2, 3, 4 } });
+        }
+
+        throw new IllegalArgumentException("No default groups for n = " + n);
+    }
+
+    /**
+     * Build the databases of the given disjoint groups of tiles
+     *
+     * @param n
+     * @param groups
+     * @return
+     */
+    public static PatternDatabase build(int n, int[][] groups) {
+        validate(n, groups);
+
+        ByteBuffer tables[] = new ByteBuffer[groups.length];
+        for (int g = 0 ; g < groups.length ; g++) {
+            tables[g] = ByteBuffer.wrap(new Builder(n, groups[g]).build());
+        }
+
+        return new PatternDatabase(n, copy(groups), tables);
+    }
+
+    /**
+     * Save the databases to path: a header with the dimension and the groups, then the tables
+     *
+     * @param path
+     * @throws IOException
+     */
+    public void save(Path path) throws IOException {
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(N);
+            out.writeInt(groups.length);
+            for (int group[] : groups) {
+                out.writeInt(group.length);
+                for (int tile : group) {
+                    out.writeInt(tile);
+                }
+            }
+
+            for (ByteBuffer table : tables) {
+                for (int rank = 0 ; rank < table.capacity() ; rank++) {
+                    out.write(table.get(rank));
+                }
+            }
+        }
+    }
+
+    /**
+     * Map databases saved by {@link #save(Path)} into memory
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static PatternDatabase load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (file.getInt() != MAGIC) {
+                throw new IllegalArgumentException(path + " is not a pattern database");
+            }
+
+            int n = file.getInt();
+            int groups[][] = new int[file.getInt()][];
+            for (int g = 0 ; g < groups.length ; g++) {
+                groups[g] = new int[file.getInt()];
+                for (int i = 0 ; i < groups[g].length ; i++) {
+                    groups[g][i] = file.getInt();
+                }
+            }
+            validate(n, groups);
+
+            ByteBuffer tables[] = new ByteBuffer[groups.length];
+            for (int g = 0 ; g < groups.length ; g++) {
+                int size = (int) placements(n * n, groups[g].length);
+                ByteBuffer table = file.slice();
+                table.limit(size);
+                tables[g] = table.slice();
+                file.position(file.position() + size);
+            }
+
+            return new PatternDatabase(n, groups, tables);
+        }
+    }
+
+    @Override
+    public int estimate(Board board) {
+        if (board.dimension() != N) {
+            throw new IllegalArgumentException("Database is for " + N + "-by-" + N + " boards");
+        }
+
+        int positions[] = this.positions.get();
+        for (int index = 0 ; index < N * N ; index++) {
+            positions[board.tileAt(index)] = index;
+        }
+
+        int estimate = 0;
+        for (int g = 0 ; g < groups.length ; g++) {
+            estimate += tables[g].get((int) rank(positions, groups[g])) & 0xFF;
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Rank of the cells the group's tiles sit at, positions giving the cell of each tile
+     */
+    private long rank(int[] positions, int[] group) {
+        long rank = 0;
+        for (int i = 0 ; i < group.length ; i++) {
+            int digit = positions[group[i]];
+            for (int j = 0 ; j < i ; j++) {
+                if (positions[group[j]] < positions[group[i]]) {
+                    digit--;
+                }
+            }
+
+            rank = rank * (N * N - i) + digit;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Dense index of k distinct cells out of m, counting each cell among those still free
+     */
+    private static long rank(int[] cells, int k, int m) {
+        long rank = 0;
+        for (int i = 0 ; i < k ; i++) {
+            int digit = cells[i];
+            for (int j = 0 ; j < i ; j++) {
+                if (cells[j] < cells[i]) {
+                    digit--;
+                }
+            }
+
+            rank = rank * (m - i) + digit;
+        }
+
+        return rank;
+    }
+
+    /**
+     * Inverse of rank
+     */
+    private static void unrank(long rank, int[] cells, int k, int m) {
+        for (int i = k - 1 ; i >= 0 ; i--) {
+            cells[i] = (int) (rank % (m - i));
+            rank /= m - i;
+        }
+
+        boolean used[] = new boolean[m];
+        for (int i = 0 ; i < k ; i++) {
+            int cell = 0;
+            for (int digit = cells[i] ; used[cell] || digit-- > 0 ; cell++);
+
+            used[cell] = true;
+            cells[i] = cell;
+        }
+    }
+
+    private static long placements(int m, int k) {
+        long placements = 1;
+        for (int i = 0 ; i < k ; i++) {
+            placements *= m - i;
+        }
+
+        return placements;
+    }
+
+    private static void validate(int n, int[][] groups) {
+        if (n < 2) {
+            throw new IllegalArgumentException("n should be at least 2");
+        }
+
+        boolean seen[] = new boolean[n * n];
+        for (int group[] : groups) {
+            if (group.length == 0 || placements(n * n, group.length) * n * n > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Group of " + group.length + " tiles is not supported");
+            }
+
+            for (int tile : group) {
+                if (tile <= 0 || tile >= n * n || seen[tile]) {
+                    throw new IllegalArgumentException("Groups should be disjoint sets of tiles, not " + tile);
+                }
+
+                seen[tile] = true;
+            }
+        }
+    }
+
+    private static int[][] copy(int[][] groups) {
+        int copy[][] = new int[groups.length][];
+        for (int g = 0 ; g < groups.length ; g++) {
+            copy[g] = groups[g].clone();
+        }
+
+        return copy;
+    }
+
+    /**
+     * Breadth-first search back from the goal over (placement of the group, blank cell) states.
+     * Moving the blank through cells of other tiles is free, so the search floods those moves
+     * within a layer and only moving a tile of the group leads to the next layer.
+     */
+    private static class Builder {
+        private final int N;
+        private final int m;
+        private final int k;
+        private final int tiles[];
+        private final byte table[];
+        private final long visited[];
+
+        private int current[] = new int[1024];
+        private int currentCount;
+        private int next[] = new int[1024];
+        private int nextCount;
+
+        public Builder(int n, int[] tiles) {
+            this.N = n;
+            this.m = n * n;
+            this.k = tiles.length;
+            this.tiles = tiles;
+            this.table = new byte[(int) placements(m, k)];
+            this.visited = new long[(int) ((placements(m, k) * m + 63) >>> 6)];
+        }
+
+        public byte[] build() {
+            Arrays.fill(table, (byte) UNREACHED);
+
+            int goal[] = new int[k];
+            for (int i = 0 ; i < k ; i++) {
+                goal[i] = tiles[i] - 1;
+            }
+            push((int) rank(goal, k, m) * m + (m - 1));
+
+            int cells[] = new int[k];
+            int occupant[] = new int[m];
+            int region[] = new int[m];
+            for (int cost = 0 ; nextCount > 0 ; cost++) {
+                int swap[] = current;
+                current = next;
+                currentCount = nextCount;
+                next = swap;
+                nextCount = 0;
+
+                for (int c = 0 ; c < currentCount ; c++) {
+                    int state = current[c];
+                    if (isVisited(state)) continue;
+
+                    int rank = state / m;
+                    if ((table[rank] & 0xFF) == UNREACHED) {
+                        table[rank] = (byte) cost;
+                    }
+
+                    unrank(rank, cells, k, m);
+                    Arrays.fill(occupant, -1);
+                    for (int i = 0 ; i < k ; i++) {
+                        occupant[cells[i]] = i;
+                    }
+
+                    // Flood the free blank moves, then queue the moves of group tiles for the next layer
+                    int regionSize = 0;
+                    region[regionSize++] = state % m;
+                    markVisited(state);
+                    for (int r = 0 ; r < regionSize ; r++) {
+                        int blank = region[r];
+                        for (int direction = Board.UP ; direction <= Board.RIGHT ; direction++) {
+                            int target = target(blank, direction);
+                            if (target < 0) continue;
+
+                            int i = occupant[target];
+                            if (i < 0) {
+                                int free = rank * m + target;
+                                if (!isVisited(free)) {
+                                    markVisited(free);
+                                    region[regionSize++] = target;
+                                }
+                            } else {
+                                cells[i] = blank;
+                                int moved = (int) rank(cells, k, m) * m + target;
+                                cells[i] = target;
+                                if (!isVisited(moved)) {
+                                    push(moved);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            return table;
+        }
+
+        private int target(int blank, int direction) {
+            switch (direction) {
+                case Board.UP:    return blank >= N ? blank - N : -1;
+                case Board.LEFT:  return blank % N != 0 ? blank - 1 : -1;
+                case Board.DOWN:  return blank < m - N ? blank + N : -1;
+                default:          return blank % N != N - 1 ? blank + 1 : -1;
+            }
+        }
+
+        private void push(int state) {
+            if (nextCount == next.length) {
+                next = Arrays.copyOf(next, 2 * nextCount);
+            }
+
+            next[nextCount++] = state;
+        }
+
+        private boolean isVisited(int state) {
+            return (visited[state >>> 6] & (1L << state)) != 0;
+        }
+
+        private void markVisited(int state) {
+            visited[state >>> 6] |= 1L << state;
+        }
+    }
+
+    /**
+     * Builds the default databases for n-by-n boards and saves them to a file
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        int n = Integer.parseInt(args[0]);
+        Path path = Paths.get(args[1]);
+
+        long start = System.currentTimeMillis();
+        build(n).save(path);
+        StdOut.println("Saved " + path + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
@@ -1,16 +1,13 @@
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
-
 public class Percolation {
 
-    private WeightedQuickUnionUF weightedQuickUnionUF;
-    private WeightedQuickUnionUF auxWeightedQuickUnionUF;
-    private boolean isSiteOpen[];
-    private int N;
+    private Lattice lattice;
+    private LatticePercolation latticePercolation;
     private int dimension;
-    private int openSiteCount;
 
     /**
-     * Create n-by-n grid, with all sites blocked
+     * Create n-by-n grid, with all sites blocked.
+     * Sites live in a flat array padded with a ring of always blocked sites,
+     * so the four neighbours of any site are valid indices without bounds checks.
      *
      * @param n
      */
@@ -19,11 +16,9 @@ public class Percolation {
             throw new IllegalArgumentException("n should be greater than 0");
         }
 
-        this.N = n * n + 2;
         this.dimension = n;
-        this.weightedQuickUnionUF = new WeightedQuickUnionUF(N);
-        this.auxWeightedQuickUnionUF = new WeightedQuickUnionUF(N);
-        this.isSiteOpen = new boolean[N + 1];
+        this.lattice = Lattice.square(n);
+        this.latticePercolation = new LatticePercolation(lattice);
     }
 
     /**
@@ -34,14 +29,14 @@ public class Percolation {
      */
     public void open(int row, int col) {
         validate(row, col);
-        if (isOpen(row, col)) return;
-
-        int siteMapping = rowColSiteMapping(row, col);
-        openSite(siteMapping);
-        connectIfRequired(row, col, row - 1, col);
-        connectIfRequired(row, col, row + 1, col);
-        connectIfRequired(row, col, row, col + 1);
-        connectIfRequired(row, col, row, col - 1);
+        latticePercolation.openPadded(lattice.paddedIndex(row, col));
+    }
+
+    /**
+     * Block every site again, reusing the arrays of this grid
+     */
+    public void reset() {
+        latticePercolation.reset();
     }
 
     private void validate(int row, int col) {
@@ -49,36 +44,6 @@ public class Percolation {
             throw new IllegalArgumentException("row = " + row + ", col = " + col + " are not in the permitted range.");
     }
 
-    private void openSite(int siteMapping) {
-        isSiteOpen[siteMapping] = true;
-        openSiteCount++;
-
-        if (topLayerSite(siteMapping)) {
-            weightedQuickUnionUF.union(0, siteMapping);
-            auxWeightedQuickUnionUF.union(0, siteMapping);
-        }
-
-        if (bottomLayerSite(siteMapping)) {
-            weightedQuickUnionUF.union(siteMapping, N - 1);
-        }
-    }
-
-    private boolean topLayerSite(int siteMapping) {
-        return siteMapping >= 1 && siteMapping <= dimension;
-    }
-
-    private boolean bottomLayerSite(int siteMapping) {
-        return siteMapping >= N - dimension - 1 && siteMapping <= N - 2;
-    }
-
-    private void connectIfRequired(int row, int col, int x, int y) {
-        if (!isValid(x, y)) return;
-        if (isSiteOpen[rowColSiteMapping(x, y)]) {
-            weightedQuickUnionUF.union(rowColSiteMapping(row, col), rowColSiteMapping(x, y));
-            auxWeightedQuickUnionUF.union(rowColSiteMapping(row, col), rowColSiteMapping(x, y));
-        }
-    }
-
     private boolean isValid(int x, int y) {
         return x >= 1 && x <= dimension && y >= 1 && y <= dimension;
     }
@@ -93,7 +58,7 @@ public class Percolation {
      */
     public boolean isOpen(int row, int col) {
         validate(row, col);
-        return isSiteOpen[rowColSiteMapping(row, col)];
+        return latticePercolation.isOpenPadded(lattice.paddedIndex(row, col));
     }
 
     /**
@@ -105,7 +70,27 @@ public class Percolation {
      */
     public boolean isFull(int row, int col) {
         validate(row, col);
-        return auxWeightedQuickUnionUF.connected(0, rowColSiteMapping(row, col));
+        return latticePercolation.isFullPadded(lattice.paddedIndex(row, col));
+    }
+
+    /**
+     * All open sites as a bitset, site (row, col) being bit (row - 1) * n + (col - 1)
+     *
+     * @return
+     */
+    public long[] openMask() {
+        return latticePercolation.openMask();
+    }
+
+    /**
+     * All full sites as a bitset, laid out as in {@link #openMask()}.
+     * The full sites are flooded from the open top row, so each is visited once
+     * and no root is looked up.
+     *
+     * @return
+     */
+    public long[] fullMask() {
+        return latticePercolation.fullMask();
     }
 
     /**
@@ -114,20 +99,25 @@ public class Percolation {
      * @return
      */
     public int numberOfOpenSites() {
-        return openSiteCount;
+        return latticePercolation.numberOfOpenSites();
     }
 
     /**
-     * Does the system percolate ?
+     * Number of sites in the largest cluster of open sites
      *
      * @return
      */
-    public boolean percolates() {
-        return weightedQuickUnionUF.connected(0, N - 1);
+    public int largestClusterSize() {
+        return latticePercolation.largestClusterSize();
     }
 
-    private int rowColSiteMapping(int row, int col) {
-        return (row - 1) * dimension + col;
+    /**
+     * Does the system percolate ?
+     *
+     * @return
+     */
+    public boolean percolates() {
+        return latticePercolation.percolates();
     }
 
     public static void main(String[] args) {
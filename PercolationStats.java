@@ -1,8 +1,23 @@
 import edu.princeton.cs.algs4.StdRandom;
-import edu.princeton.cs.algs4.StdStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 public class PercolationStats {
 
+    // Trials per task; fixed so the random streams do not depend on the thread count
+    private static final int TRIALS_PER_TASK = 64;
+
+    // Upper bound on the tasks run between two confidence checks when stopping early
+    private static final int MAX_TASKS_PER_ROUND = 256;
+
+    private static final double CONFIDENCE_95 = 1.96;
+
     private double mean;
     private double stddev;
     private double T;
@@ -15,27 +30,214 @@ public class PercolationStats {
      */
     public PercolationStats(int n, int trials) {
         // Perform n Trials
-        if (n <= 0 || trials <= 0) {
-            throw new IllegalArgumentException("N or T is invalid");
+        validate(trials);
+
+        SplittableRandom random = new SplittableRandom(StdRandom.uniform(Integer.MAX_VALUE));
+        summarize(new TrialTask(squareSites(n), trials, random).call());
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid using the common fork-join pool
+     *
+     * @param n
+     * @param trials
+     * @param seed
+     */
+    public PercolationStats(int n, int trials, long seed) {
+        this(n, trials, seed, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Perform trials independent experiments on an n-by-n grid, spreading them across the executor.
+     * Trials are grouped in fixed size tasks, each drawing from its own stream split off the seed,
+     * so the result is the same for a given seed whatever the number of threads.
+     *
+     * @param n
+     * @param trials
+     * @param seed
+     * @param executor
+     */
+    public PercolationStats(int n, int trials, long seed, ExecutorService executor) {
+        this(squareSites(n), trials, seed, executor);
+    }
+
+    /**
+     * Perform trials independent experiments on the systems made by the factory, one system
+     * per task, for instance site or bond percolation on any {@link Lattice}.
+     * A given seed gives the same result whatever the number of threads.
+     *
+     * @param systems
+     * @param trials
+     * @param seed
+     * @param executor
+     */
+    public PercolationStats(Supplier<? extends PercolationSystem> systems, int trials, long seed, ExecutorService executor) {
+        validate(trials);
+        validate(systems, executor);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Callable<RunningStats>> tasks = new ArrayList<>();
+        for (int lo = 0 ; lo < trials ; lo += TRIALS_PER_TASK) {
+            tasks.add(new TrialTask(systems, Math.min(TRIALS_PER_TASK, trials - lo), random.split()));
+        }
+
+        RunningStats stats = new RunningStats();
+        stats.merge(await(executor, tasks));
+        summarize(stats);
+    }
+
+    private PercolationStats(RunningStats stats) {
+        summarize(stats);
+    }
+
+    /**
+     * Perform experiments on an n-by-n grid until the 95% confidence interval is narrower than width.
+     * Trials run in rounds of fixed size tasks, doubling the round after every check, so the number
+     * of trials and the result are the same for a given seed whatever the number of threads.
+     *
+     * @param n
+     * @param width
+     * @param seed
+     * @param executor
+     * @return
+     */
+    public static PercolationStats untilConfidenceWidth(int n, double width, long seed, ExecutorService executor) {
+        return untilConfidenceWidth(squareSites(n), width, seed, executor);
+    }
+
+    /**
+     * Perform experiments on the systems made by the factory until the 95% confidence interval
+     * is narrower than width
+     *
+     * @param systems
+     * @param width
+     * @param seed
+     * @param executor
+     * @return
+     */
+    public static PercolationStats untilConfidenceWidth(Supplier<? extends PercolationSystem> systems, double width,
+                                                        long seed, ExecutorService executor) {
+        validate(systems, executor);
+        if (!(width > 0.0)) {
+            throw new IllegalArgumentException("width should be greater than 0");
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        RunningStats stats = new RunningStats();
+        int tasksPerRound = 1;
+        while (stats.count() < 2 || intervalWidth(stats.stddev(), stats.count()) >= width) {
+            List<Callable<RunningStats>> tasks = new ArrayList<>();
+            for (int i = 0 ; i < tasksPerRound ; i++) {
+                tasks.add(new TrialTask(systems, TRIALS_PER_TASK, random.split()));
+            }
+
+            stats.merge(await(executor, tasks));
+            tasksPerRound = Math.min(2 * tasksPerRound, MAX_TASKS_PER_ROUND);
         }
 
-        this.T = (double) trials;
+        return new PercolationStats(stats);
+    }
+
+    /**
+     * Runs a number of trials one after another and accumulates their thresholds
+     */
+    private static class TrialTask implements Callable<RunningStats> {
+        private final Supplier<? extends PercolationSystem> systems;
+        private final int trials;
+        private final SplittableRandom random;
+
+        public TrialTask(Supplier<? extends PercolationSystem> systems, int trials, SplittableRandom random) {
+            this.systems = systems;
+            this.trials = trials;
+            this.random = random;
+        }
 
-        double samples[] = new double[trials];
-        for (int trial = 0 ; trial < trials ; trial++) {
-            Percolation percolation = new Percolation(n);
-            while (!percolation.percolates()) {
-                int row = StdRandom.uniform(n) + 1;
-                int col = StdRandom.uniform(n) + 1;
+        @Override
+        public RunningStats call() {
+            PercolationSystem system = systems.get();
+            int elements[] = new int[system.elements()];
+            for (int i = 0 ; i < elements.length ; i++) {
+                elements[i] = i;
+            }
 
-                percolation.open(row, col);
+            RunningStats stats = new RunningStats();
+            for (int trial = 0 ; trial < trials ; trial++) {
+                system.reset();
+                stats.add(runTrial(system, elements, random));
             }
 
-            samples[trial] = percolation.numberOfOpenSites() / (double)(n * n);
+            return stats;
         }
+    }
 
-        mean = StdStats.mean(samples);
-        stddev = StdStats.stddev(samples);
+    /**
+     * Open elements in the order of a random permutation of all of them, generated lazily by an
+     * incremental Fisher-Yates shuffle of elements, until the system percolates. Every draw opens
+     * a blocked element, except ids that do not exist such as bonds along the boundary. Whatever
+     * order elements is left in is still a permutation, so it is reused as is.
+     */
+    private static double runTrial(PercolationSystem system, int[] elements, SplittableRandom random) {
+        int opened = 0;
+        for (int drawn = 0 ; drawn < elements.length && !system.percolates() ; drawn++) {
+            int pick = drawn + random.nextInt(elements.length - drawn);
+            int element = elements[pick];
+            elements[pick] = elements[drawn];
+            elements[drawn] = element;
+
+            if (system.open(element)) {
+                opened++;
+            }
+        }
+
+        return opened / (double) system.openableElements();
+    }
+
+    private static Supplier<PercolationSystem> squareSites(final int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("N or T is invalid");
+        }
+
+        return new Supplier<PercolationSystem>() {
+            @Override
+            public PercolationSystem get() {
+                return new LatticePercolation(Lattice.square(n));
+            }
+        };
+    }
+
+    /**
+     * Runs the tasks and merges their statistics in submission order, so the floating point
+     * result does not depend on which task finishes first
+     */
+    private static RunningStats await(ExecutorService executor, List<Callable<RunningStats>> tasks) {
+        RunningStats stats = new RunningStats();
+        Tasks.inOrder(executor, tasks, stats::merge);
+        return stats;
+    }
+
+    private void summarize(RunningStats stats) {
+        this.T = (double) stats.count();
+        this.mean = stats.mean();
+        this.stddev = stats.stddev();
+    }
+
+    private static double intervalWidth(double stddev, double trials) {
+        return 2 * CONFIDENCE_95 * stddev / Math.sqrt(trials);
+    }
+
+    private static void validate(int trials) {
+        if (trials <= 0) {
+            throw new IllegalArgumentException("N or T is invalid");
+        }
+    }
+
+    private static void validate(Supplier<? extends PercolationSystem> systems, ExecutorService executor) {
+        if (systems == null) {
+            throw new IllegalArgumentException("System factory cannot be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
     }
 
     /**
@@ -56,13 +258,22 @@ public class PercolationStats {
         return stddev;
     }
 
+    /**
+     * Number of trials performed
+     *
+     * @return
+     */
+    public int trials() {
+        return (int) T;
+    }
+
     /**
      * Low endpoint of 95% confidence interval
      *
      * @return
      */
     public double confidenceLo() {
-        return mean - (1.96 * stddev() / Math.sqrt(T));
+        return mean - (CONFIDENCE_95 * stddev() / Math.sqrt(T));
     }
 
     /**
@@ -71,7 +282,7 @@ public class PercolationStats {
      * @return
      */
     public double confidenceHi() {
-        return mean + (1.96 * stddev() / Math.sqrt(T));
+        return mean + (CONFIDENCE_95 * stddev() / Math.sqrt(T));
     }
 
     /**
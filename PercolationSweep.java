@@ -0,0 +1,257 @@
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Newman-Ziff sweep over an n-by-n grid. Each trial opens every site in a random order and
+ * records, for every number of open sites k, whether the system percolates and the size of the
+ * largest cluster. Averaging over trials gives the whole curve P(percolates | k open sites), and
+ * convolving it with the binomial distribution gives P(percolates | p) for any occupation
+ * probability p, all for about the cost of a single threshold run per trial.
+ */
+public class PercolationSweep {
+
+    // Sweeps per task. Each task fills two histograms of n * n + 1 counts, which are folded into
+    // the totals as soon as it completes; the size is fixed so a seed gives the same curves anywhere.
+    private static final int TRIALS_PER_TASK = 16;
+
+    private int sites;
+    private int trials;
+    private double percolating[];
+    private double largestCluster[];
+
+    /**
+     * Perform trials sweeps on an n-by-n grid
+     *
+     * @param n
+     * @param trials
+     */
+    public PercolationSweep(int n, int trials) {
+        this(n, trials, StdRandom.uniform(Integer.MAX_VALUE), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Perform trials sweeps on an n-by-n grid, spreading them across the executor.
+     * A given seed gives the same curves whatever the number of threads.
+     *
+     * @param n
+     * @param trials
+     * @param seed
+     * @param executor
+     */
+    public PercolationSweep(int n, int trials, long seed, ExecutorService executor) {
+        if (n <= 0 || trials <= 0) {
+            throw new IllegalArgumentException("N or T is invalid");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+
+        this.sites = n * n;
+        this.trials = trials;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<SweepTask> tasks = new ArrayList<>();
+        for (int lo = 0 ; lo < trials ; lo += TRIALS_PER_TASK) {
+            tasks.add(new SweepTask(n, Math.min(TRIALS_PER_TASK, trials - lo), random.split()));
+        }
+
+        // Sums of counts do not depend on the order they are added in
+        final long thresholdCounts[] = new long[sites + 1];
+        final long largestClusterSums[] = new long[sites + 1];
+        Tasks.asCompleted(executor, tasks, counts -> {
+            for (int k = 0 ; k <= sites ; k++) {
+                thresholdCounts[k] += counts.thresholdCounts[k];
+                largestClusterSums[k] += counts.largestClusterSums[k];
+            }
+        });
+
+        // Percolation is monotone, so P(k) is the fraction of trials whose threshold is at most k
+        this.percolating = new double[sites + 1];
+        this.largestCluster = new double[sites + 1];
+        long percolatingTrials = 0;
+        for (int k = 0 ; k <= sites ; k++) {
+            percolatingTrials += thresholdCounts[k];
+            percolating[k] = percolatingTrials / (double) trials;
+            largestCluster[k] = largestClusterSums[k] / ((double) trials * sites);
+        }
+    }
+
+    /**
+     * Histograms of the thresholds and largest clusters of a batch of sweeps
+     */
+    private static class SweepCounts {
+        private final long thresholdCounts[];
+        private final long largestClusterSums[];
+
+        SweepCounts(int sites) {
+            this.thresholdCounts = new long[sites + 1];
+            this.largestClusterSums = new long[sites + 1];
+        }
+    }
+
+    /**
+     * Runs a batch of sweeps. The counts are returned rather than kept, so they can be dropped
+     * once added up while the task itself is still referenced.
+     */
+    private static class SweepTask implements Callable<SweepCounts> {
+        private final int n;
+        private final int trials;
+        private final SplittableRandom random;
+
+        public SweepTask(int n, int trials, SplittableRandom random) {
+            this.n = n;
+            this.trials = trials;
+            this.random = random;
+        }
+
+        @Override
+        public SweepCounts call() {
+            int sites[] = new int[n * n];
+            for (int i = 0 ; i < sites.length ; i++) {
+                sites[i] = i;
+            }
+
+            SweepCounts counts = new SweepCounts(sites.length);
+            Percolation percolation = new Percolation(n);
+            for (int trial = 0 ; trial < trials ; trial++) {
+                percolation.reset();
+                sweep(percolation, sites, counts.thresholdCounts, counts.largestClusterSums);
+            }
+
+            return counts;
+        }
+
+        private void sweep(Percolation percolation, int[] sites, long[] thresholdCounts, long[] largestClusterSums) {
+            int threshold = -1;
+            for (int opened = 0 ; opened < sites.length ; opened++) {
+                int pick = opened + random.nextInt(sites.length - opened);
+                int site = sites[pick];
+                sites[pick] = sites[opened];
+                sites[opened] = site;
+
+                percolation.open(site / n + 1, site % n + 1);
+                if (threshold < 0 && percolation.percolates()) {
+                    threshold = opened + 1;
+                }
+
+                largestClusterSums[opened + 1] += percolation.largestClusterSize();
+            }
+
+            thresholdCounts[threshold]++;
+        }
+    }
+
+    /**
+     * Fraction of trials that percolate with exactly k open sites
+     *
+     * @param k
+     * @return
+     */
+    public double percolationProbabilityAtOpenSites(int k) {
+        validateOpenSites(k);
+        return percolating[k];
+    }
+
+    /**
+     * Mean size of the largest cluster with exactly k open sites, as a fraction of all sites
+     *
+     * @param k
+     * @return
+     */
+    public double largestClusterFractionAtOpenSites(int k) {
+        validateOpenSites(k);
+        return largestCluster[k];
+    }
+
+    /**
+     * Probability that the system percolates when each site is open with probability p
+     *
+     * @param p
+     * @return
+     */
+    public double percolationProbability(double p) {
+        return convolve(percolating, p);
+    }
+
+    /**
+     * Mean size of the largest cluster, as a fraction of all sites, when each site is open with probability p
+     *
+     * @param p
+     * @return
+     */
+    public double largestClusterFraction(double p) {
+        return convolve(largestCluster, p);
+    }
+
+    /**
+     * Number of sweeps performed
+     *
+     * @return
+     */
+    public int trials() {
+        return trials;
+    }
+
+    /**
+     * Weighs the curve by the binomial distribution B(sites, p). The weights are built outwards
+     * from the mode by their ratio recurrence and normalised at the end, so no factorials overflow.
+     */
+    private double convolve(double[] curve, double p) {
+        if (!(p >= 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("p = " + p + " is not a probability.");
+        }
+        if (p == 0.0) return curve[0];
+        if (p == 1.0) return curve[sites];
+
+        int mode = Math.min(sites, (int) ((sites + 1) * p));
+        double odds = p / (1.0 - p);
+
+        double totalWeight = 1.0;
+        double total = curve[mode];
+
+        double weight = 1.0;
+        for (int k = mode + 1 ; k <= sites && weight > 0.0 ; k++) {
+            weight *= (sites - k + 1) / (double) k * odds;
+            totalWeight += weight;
+            total += weight * curve[k];
+        }
+
+        weight = 1.0;
+        for (int k = mode - 1 ; k >= 0 && weight > 0.0 ; k--) {
+            weight *= (k + 1) / (double) (sites - k) / odds;
+            totalWeight += weight;
+            total += weight * curve[k];
+        }
+
+        return total / totalWeight;
+    }
+
+    private void validateOpenSites(int k) {
+        if (k < 0 || k > sites) {
+            throw new IllegalArgumentException("k = " + k + " is not in the permitted range.");
+        }
+    }
+
+    /**
+     * Test client, prints P(percolates | p) and the largest cluster fraction around the threshold
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+
+        PercolationSweep sweep = new PercolationSweep(n, trials);
+        for (double p = 0.50 ; p <= 0.70 ; p += 0.01) {
+            StdOut.printf("p = %.2f  percolates = %.4f  largest cluster = %.4f%n",
+                    p, sweep.percolationProbability(p), sweep.largestClusterFraction(p));
+        }
+    }
+}
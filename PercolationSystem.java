@@ -0,0 +1,40 @@
+/**
+ * A percolation model that experiments fill one randomly chosen element at a time,
+ * the elements being the sites or the bonds of a lattice.
+ */
+public interface PercolationSystem {
+
+    /**
+     * Number of element ids, experiments draw ids from 0 to elements() - 1
+     *
+     * @return
+     */
+    int elements();
+
+    /**
+     * Number of ids that can actually be opened, the denominator of the threshold
+     *
+     * @return
+     */
+    int openableElements();
+
+    /**
+     * Open element if it is not open already
+     *
+     * @param element
+     * @return true if a blocked element was opened
+     */
+    boolean open(int element);
+
+    /**
+     * Does the system percolate ?
+     *
+     * @return
+     */
+    boolean percolates();
+
+    /**
+     * Block every element again
+     */
+    void reset();
+}
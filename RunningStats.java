@@ -0,0 +1,80 @@
+/**
+ * Constant memory accumulator for the mean and variance of a stream of samples,
+ * using Welford's online update. Each thread can keep its own accumulator and
+ * the results can be merged afterwards with Chan's parallel combination.
+ */
+public class RunningStats {
+
+    private long count;
+    private double mean;
+    private double squaredDeviations;
+
+    /**
+     * Add a sample
+     *
+     * @param sample
+     */
+    public void add(double sample) {
+        count++;
+        double delta = sample - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (sample - mean);
+    }
+
+    /**
+     * Fold the samples of other into this accumulator
+     *
+     * @param other
+     */
+    public void merge(RunningStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            squaredDeviations = other.squaredDeviations;
+            return;
+        }
+
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+
+    /**
+     * Number of samples
+     *
+     * @return
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Sample mean
+     *
+     * @return
+     */
+    public double mean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Sample variance, NaN with fewer than two samples
+     *
+     * @return
+     */
+    public double variance() {
+        return count < 2 ? Double.NaN : squaredDeviations / (count - 1);
+    }
+
+    /**
+     * Sample standard deviation, NaN with fewer than two samples
+     *
+     * @return
+     */
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+}
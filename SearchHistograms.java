@@ -0,0 +1,129 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the stats of many searches, e.g. of a batch run, into histograms with one bucket
+ * per power of two, so recording costs a few atomic increments and the memory is fixed.
+ * Percentiles are read back as the upper bound of the bucket they fall in, within a factor of 2.
+ * Safe to share between threads.
+ */
+public class SearchHistograms implements SearchListener {
+
+    public static final int GENERATED = 0;
+    public static final int EXPANDED = 1;
+    public static final int DUPLICATES = 2;
+    public static final int PEAK_FRONTIER = 3;
+    public static final int HEURISTIC_MICROS = 4;
+    public static final int WALL_MICROS = 5;
+
+    private static final String NAMES[] = {
+        "generated", "expanded", "duplicates", "peak frontier", "heuristic us", "wall us"
+    };
+
+    // Bucket b holds values v with 2^(b-1) <= v < 2^b, bucket 0 holds 0
+    private static final int BUCKETS = 65;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NAMES.length * BUCKETS);
+    private final AtomicLongArray sums = new AtomicLongArray(NAMES.length);
+    private final AtomicLongArray maxima = new AtomicLongArray(NAMES.length);
+
+    @Override
+    public void searched(Board initial, SearchStats stats) {
+        record(GENERATED, stats.generated());
+        record(EXPANDED, stats.expanded());
+        record(DUPLICATES, stats.duplicates());
+        record(PEAK_FRONTIER, stats.peakFrontier());
+        record(HEURISTIC_MICROS, stats.heuristicNanos() / 1000);
+        record(WALL_MICROS, stats.wallNanos() / 1000);
+    }
+
+    private void record(int metric, long value) {
+        counts.incrementAndGet(metric * BUCKETS + 64 - Long.numberOfLeadingZeros(value));
+        sums.addAndGet(metric, value);
+
+        long max = maxima.get(metric);
+        while (value > max && !maxima.compareAndSet(metric, max, value)) {
+            max = maxima.get(metric);
+        }
+    }
+
+    /**
+     * Number of searches recorded
+     *
+     * @return
+     */
+    public long count() {
+        long count = 0;
+        for (int b = 0 ; b < BUCKETS ; b++) {
+            count += counts.get(b);
+        }
+
+        return count;
+    }
+
+    /**
+     * Mean of metric over the searches recorded
+     *
+     * @param metric
+     * @return
+     */
+    public double mean(int metric) {
+        validate(metric);
+        long count = count();
+        return count == 0 ? Double.NaN : (double) sums.get(metric) / count;
+    }
+
+    /**
+     * Largest value of metric recorded
+     *
+     * @param metric
+     * @return
+     */
+    public long max(int metric) {
+        validate(metric);
+        return maxima.get(metric);
+    }
+
+    /**
+     * Upper bound of the bucket holding the given fraction of the values of metric
+     *
+     * @param metric
+     * @param fraction between 0 and 1
+     * @return
+     */
+    public long percentile(int metric, double fraction) {
+        validate(metric);
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("fraction should be between 0 and 1");
+        }
+
+        long rank = (long) Math.ceil(fraction * count());
+        long seen = 0;
+        for (int b = 0 ; b < BUCKETS ; b++) {
+            seen += counts.get(metric * BUCKETS + b);
+            if (seen >= rank && seen > 0) {
+                return Math.min(b == 0 ? 0 : b == 64 ? Long.MAX_VALUE : (1L << b) - 1, max(metric));
+            }
+        }
+
+        return 0;
+    }
+
+    private void validate(int metric) {
+        if (metric < 0 || metric >= NAMES.length) {
+            throw new IllegalArgumentException("Unknown metric " + metric);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(count()).append(" searches\n");
+        for (int metric = 0 ; metric < NAMES.length ; metric++) {
+            builder.append(String.format("%-14s mean %12.1f  p50 %10d  p90 %10d  p99 %10d  max %10d%n",
+                    NAMES[metric], mean(metric), percentile(metric, 0.5), percentile(metric, 0.9),
+                    percentile(metric, 0.99), max(metric)));
+        }
+
+        return builder.toString();
+    }
+}
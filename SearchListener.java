@@ -0,0 +1,14 @@
+/**
+ * Receives the cost of each search once it is done. Solvers call it on the thread that ran the
+ * search, so listeners shared by several threads must be thread-safe.
+ */
+public interface SearchListener {
+
+    /**
+     * Called when the search for initial is over
+     *
+     * @param initial
+     * @param stats
+     */
+    void searched(Board initial, SearchStats stats);
+}
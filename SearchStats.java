@@ -0,0 +1,96 @@
+/**
+ * Cost of one search: boards generated and expanded, boards dropped because they had been
+ * reached in as few moves before, the largest size of the open list, and the time spent in the
+ * heuristic and in the whole search.
+ */
+public class SearchStats {
+
+    private final int moves;
+    private final long generated;
+    private final long expanded;
+    private final long duplicates;
+    private final int peakFrontier;
+    private final long heuristicNanos;
+    private final long wallNanos;
+
+    SearchStats(int moves, long generated, long expanded, long duplicates, int peakFrontier,
+                long heuristicNanos, long wallNanos) {
+        this.moves = moves;
+        this.generated = generated;
+        this.expanded = expanded;
+        this.duplicates = duplicates;
+        this.peakFrontier = peakFrontier;
+        this.heuristicNanos = heuristicNanos;
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * Moves of the solution found, -1 if none was
+     *
+     * @return
+     */
+    public int moves() {
+        return moves;
+    }
+
+    /**
+     * Boards generated, the initial one included
+     *
+     * @return
+     */
+    public long generated() {
+        return generated;
+    }
+
+    /**
+     * Boards whose neighbors were generated
+     *
+     * @return
+     */
+    public long expanded() {
+        return expanded;
+    }
+
+    /**
+     * Boards generated or taken off the open list after being reached in as few moves before
+     *
+     * @return
+     */
+    public long duplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Largest number of entries on the open list at once
+     *
+     * @return
+     */
+    public int peakFrontier() {
+        return peakFrontier;
+    }
+
+    /**
+     * Nanoseconds spent evaluating the heuristic
+     *
+     * @return
+     */
+    public long heuristicNanos() {
+        return heuristicNanos;
+    }
+
+    /**
+     * Nanoseconds the whole search took
+     *
+     * @return
+     */
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "moves " + moves + ", generated " + generated + ", expanded " + expanded
+                + ", duplicates " + duplicates + ", peak frontier " + peakFrontier
+                + ", heuristic " + heuristicNanos / 1000 + " us, wall " + wallNanos / 1000 + " us";
+    }
+}
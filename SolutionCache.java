@@ -0,0 +1,385 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shortest solutions of boards up to 4-by-4, kept so boards seen before are not solved again.
+ * A board and its transpose, with the tiles renumbered so the goal maps onto itself, take
+ * the same number of moves, so both share one entry under the smaller of their packed keys.
+ * The other symmetries of the square move the blank's goal corner and are not used.
+ * Recent entries stay in memory, up to a capacity, the least recently used going first. All
+ * entries can also be kept in a file, so they survive restarts: an open-addressing table of
+ * fixed-size slots keyed on the canonical board, memory-mapped in windows, so neither the index
+ * nor the entries take heap however large the file grows. A slot is written once and published
+ * by its dimension byte last, so a slot cut short by a crash reads as empty.
+ * Larger boards are passed straight to the Solver.
+ */
+public class SolutionCache implements Closeable {
+
+    private static final int PACKED_DIMENSION = 4;
+
+    private final Heuristic heuristic;
+    // Directions the blank takes in a shortest solution of each canonical board
+    private final LinkedHashMap<Key, int[]> recent;
+
+    // On-disk store, null when the cache lives in memory only
+    private Store store;
+
+    private static class Key {
+        final int n;
+        final long tiles;
+
+        Key(int n, long tiles) {
+            this.n = n;
+            this.tiles = tiles;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+
+            Key that = (Key) other;
+            return n == that.n && tiles == that.tiles;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) Board.mix(tiles ^ n);
+        }
+    }
+
+    /**
+     * Create a cache in memory holding up to capacity solutions
+     *
+     * @param heuristic
+     * @param capacity
+     */
+    public SolutionCache(Heuristic heuristic, final int capacity) {
+        if (heuristic == null) {
+            throw new IllegalArgumentException("Heuristic cannot be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0");
+        }
+
+        this.heuristic = heuristic;
+        this.recent = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Create a cache holding up to capacity solutions in memory and every solution in the file
+     * at path, created if missing
+     *
+     * @param heuristic
+     * @param capacity
+     * @param path
+     * @throws IOException
+     */
+    public SolutionCache(Heuristic heuristic, int capacity, Path path) throws IOException {
+        this(heuristic, capacity);
+        if (path == null) {
+            throw new IllegalArgumentException("Path cannot be null");
+        }
+
+        this.store = new Store(path, Store.INITIAL_SLOTS);
+    }
+
+    /**
+     * Min number of moves to solve board, -1 if it is unsolvable
+     *
+     * @param board
+     * @return
+     * @throws IOException
+     */
+    public int moves(Board board) throws IOException {
+        int path[] = path(board);
+        return path == null ? -1 : path.length;
+    }
+
+    /**
+     * Sequence of boards in a shortest solution, null if board is unsolvable
+     *
+     * @param board
+     * @return
+     * @throws IOException
+     */
+    public Iterable<Board> solution(Board board) throws IOException {
+        int path[] = path(board);
+        if (path == null) return null;
+
+        List<Board> solution = new ArrayList<>(path.length + 1);
+        solution.add(board);
+        for (int direction : path) {
+            board = board.move(direction);
+            solution.add(board);
+        }
+
+        return solution;
+    }
+
+    /**
+     * Directions the blank takes in a shortest solution of board
+     */
+    private int[] path(Board board) throws IOException {
+        if (board == null) {
+            throw new IllegalArgumentException("Board cannot be null");
+        }
+        if (!board.isSolvable()) return null;
+
+        int n = board.dimension();
+        if (n > PACKED_DIMENSION) {
+            return solve(board);
+        }
+
+        long transposed = transpose(board.key(), n);
+        boolean isTransposed = transposed < board.key();
+        Key key = new Key(n, isTransposed ? transposed : board.key());
+
+        int cached[] = lookup(key);
+        if (cached == null) {
+            cached = solve(isTransposed ? new Board(n, transposed) : board);
+            store(key, cached);
+        }
+
+        // The transpose exchanges rows and columns, so UP and LEFT, DOWN and RIGHT
+        int path[] = cached.clone();
+        if (isTransposed) {
+            for (int i = 0 ; i < path.length ; i++) {
+                path[i] ^= 1;
+            }
+        }
+
+        return path;
+    }
+
+    private int[] solve(Board board) {
+        return new Solver(board, heuristic).path();
+    }
+
+    private synchronized int[] lookup(Key key) throws IOException {
+        int path[] = recent.get(key);
+        if (path != null || store == null) return path;
+
+        path = store.get(key);
+        if (path != null) {
+            recent.put(key, path);
+        }
+
+        return path;
+    }
+
+    private synchronized void store(Key key, int[] path) throws IOException {
+        recent.put(key, path);
+        if (store != null) {
+            store.put(key, path);
+        }
+    }
+
+    /**
+     * Packed key of the transposed board, the tiles renumbered so the goal stays the goal
+     */
+    static long transpose(long tiles, int n) {
+        long transposed = 0;
+        for (int row = 0 ; row < n ; row++) {
+            for (int col = 0 ; col < n ; col++) {
+                int tile = (int) (tiles >>> ((row * n + col) << 2)) & 0xF;
+                if (tile != 0) {
+                    int home = tile - 1;
+                    tile = (home % n) * n + home / n + 1;
+                }
+
+                transposed |= (long) tile << ((col * n + row) << 2);
+            }
+        }
+
+        return transposed;
+    }
+
+    /**
+     * Open-addressing table in a file. After a header of magic, slot count and entry count, each
+     * slot holds the dimension (0 for an empty slot), the moves, the directions four to a byte
+     * and the canonical key. The table doubles into a new file once half full.
+     */
+    private static class Store {
+
+        private static final int MAGIC = 0x53434832;
+        private static final int SLOT_BYTES = 32;
+        private static final int HEADER_BYTES = SLOT_BYTES;
+        private static final int DIRECTIONS = 2;
+        private static final int KEY = 24;
+        private static final int MAX_MOVES = 4 * (KEY - DIRECTIONS);
+        private static final long INITIAL_SLOTS = 1 << 12;
+
+        // Slots per mapped window; windows are mapped on first use and never straddle a slot
+        private static final int WINDOW_SHIFT = 28 - 5;
+
+        private final Path path;
+        private FileChannel channel;
+        private MappedByteBuffer header;
+        private MappedByteBuffer windows[];
+        private long slots;
+        private long count;
+
+        Store(Path path, long initialSlots) throws IOException {
+            this.path = path;
+            open(initialSlots);
+        }
+
+        private void open(long initialSlots) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putLong(8, initialSlots);
+                header.putLong(16, 0);
+            } else if (header.getInt(0) != MAGIC) {
+                channel.close();
+                throw new IllegalArgumentException(path + " is not a solution cache");
+            }
+
+            slots = header.getLong(8);
+            count = header.getLong(16);
+            windows = new MappedByteBuffer[(int) (((slots - 1) >>> WINDOW_SHIFT) + 1)];
+        }
+
+        int[] get(Key key) throws IOException {
+            for (long slot = home(key) ; ; slot = (slot + 1) & (slots - 1)) {
+                MappedByteBuffer window = window(slot);
+                int offset = offset(slot);
+                int n = window.get(offset);
+                if (n == 0) return null;
+
+                if (n == key.n && window.getLong(offset + KEY) == key.tiles) {
+                    int path[] = new int[window.get(offset + 1) & 0xFF];
+                    for (int i = 0 ; i < path.length ; i++) {
+                        path[i] = window.get(offset + DIRECTIONS + (i >> 2)) >>> ((i & 3) << 1) & 3;
+                    }
+
+                    return path;
+                }
+            }
+        }
+
+        void put(Key key, int[] path) throws IOException {
+            if (path.length > MAX_MOVES || get(key) != null) return;
+
+            if (2 * (count + 1) > slots) {
+                grow();
+            }
+
+            long slot = home(key);
+            while (window(slot).get(offset(slot)) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            write(window(slot), offset(slot), key.n, key.tiles, path);
+            header.putLong(16, ++count);
+        }
+
+        private static void write(MappedByteBuffer window, int offset, int n, long tiles, int[] path) {
+            // A crash may have left bytes of an unpublished slot behind, so every byte is written
+            byte directions[] = new byte[KEY - DIRECTIONS];
+            for (int i = 0 ; i < path.length ; i++) {
+                directions[i >> 2] |= path[i] << ((i & 3) << 1);
+            }
+
+            window.put(offset + 1, (byte) path.length);
+            for (int i = 0 ; i < directions.length ; i++) {
+                window.put(offset + DIRECTIONS + i, directions[i]);
+            }
+            window.putLong(offset + KEY, tiles);
+
+            // Published last: until then the slot reads as empty
+            window.put(offset, (byte) n);
+        }
+
+        /**
+         * Rehash every entry into a table twice the size, built aside and moved over the file
+         */
+        private void grow() throws IOException {
+            Path grown = path.resolveSibling(path.getFileName() + ".grow");
+            Files.deleteIfExists(grown);
+            Store target = new Store(grown, 2 * slots);
+            for (long slot = 0 ; slot < slots ; slot++) {
+                MappedByteBuffer window = window(slot);
+                int offset = offset(slot);
+                int n = window.get(offset);
+                if (n == 0) continue;
+
+                target.copy(window, offset);
+            }
+            target.channel.force(true);
+            target.channel.close();
+            channel.close();
+
+            Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // The slot count of an existing file comes from its header
+            open(INITIAL_SLOTS);
+        }
+
+        private void copy(MappedByteBuffer source, int sourceOffset) throws IOException {
+            long tiles = source.getLong(sourceOffset + KEY);
+            long slot = home(new Key(source.get(sourceOffset), tiles));
+            while (window(slot).get(offset(slot)) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+
+            // Backwards, so the dimension byte is published last
+            MappedByteBuffer window = window(slot);
+            int offset = offset(slot);
+            for (int i = SLOT_BYTES - 1 ; i >= 0 ; i--) {
+                window.put(offset + i, source.get(sourceOffset + i));
+            }
+            header.putLong(16, ++count);
+        }
+
+        private long home(Key key) {
+            return key.hashCode() & 0xFFFFFFFFL & (slots - 1);
+        }
+
+        private MappedByteBuffer window(long slot) throws IOException {
+            int w = (int) (slot >>> WINDOW_SHIFT);
+            if (windows[w] == null) {
+                long first = (long) w << WINDOW_SHIFT;
+                long size = Math.min(slots - first, 1L << WINDOW_SHIFT) * SLOT_BYTES;
+                windows[w] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + first * SLOT_BYTES, size);
+            }
+
+            return windows[w];
+        }
+
+        private static int offset(long slot) {
+            return (int) (slot & ((1 << WINDOW_SHIFT) - 1)) * SLOT_BYTES;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Close the on-disk store, if any
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+}
@@ -1,32 +1,67 @@
 import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.MinPQ;
 import edu.princeton.cs.algs4.StdOut;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class Solver {
 
-    private List<Board> solution;
+    // Expansions between two looks at the clock when the search has a time budget
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private Board initial;
     private boolean isSolvable;
+    private int moves = -1;
+    private Heuristic heuristic;
+
+    // Boards are ordered by scale * moves + weight * estimate, those that cannot make a solution
+    // shorter than cutoff are dropped, and the search gives up at deadline, a System.nanoTime value
+    private int weight;
+    private int scale;
+    private int cutoff;
+    private long deadline;
+    private boolean timedOut;
 
-    private class EnhancedBoard implements Comparable<EnhancedBoard> {
-        int moves;
-        Board board;
-        EnhancedBoard parent;
-        int priority;
+    // Counters of the search, kept whether or not anyone listens as they cost next to nothing;
+    // only timing the heuristic is left to when there is a listener
+    private SearchListener listener;
+    private long generated;
+    private long expanded;
+    private long duplicates;
+    private int peakFrontier;
+    private long heuristicNanos;
+
+    // Directions taken by the blank from initial, and the boards they lead to once asked for
+    private int path[];
+    private List<Board> solution;
 
-        public EnhancedBoard(Board board, int moves, EnhancedBoard parent) {
+    /**
+     * Search node: up to 4-by-4 only the packed tiles and distances, the board being rebuilt from
+     * them in constant time when expanded; how the node was reached is kept in the closed set
+     * rather than by a parent pointer
+     */
+    private static class Node {
+        final long key;
+        final int distances;
+        final Board board;
+        final int moves;
+
+        Node(Board board, int moves) {
+            this.key = board.key();
+            this.distances = board.hasExactKey() ? board.distances() : 0;
+            this.board = board.hasExactKey() ? null : board;
             this.moves = moves;
-            this.board = board;
-            this.parent = parent;
-            this.priority = board.manhattan() + moves;
         }
 
-        @Override
-        public int compareTo(EnhancedBoard other) {
-            return Integer.compare(this.priority, other.priority);
+        Board board(int n) {
+            return board != null ? board : new Board(n, key, distances);
+        }
+
+        /**
+         * Fewest moves the board was reached in so far, looked up without rebuilding it
+         */
+        int best(TranspositionTable closed) {
+            return board != null ? closed.get(board) : closed.get(key);
         }
     }
 
@@ -36,63 +71,190 @@ public class Solver {
      * @param initial
      */
     public Solver(Board initial) {
+        this(initial, Heuristic.MANHATTAN);
+    }
+
+    /**
+     * Find a solution to the initial board, guided by the given admissible heuristic
+     *
+     * @param initial
+     * @param heuristic
+     */
+    public Solver(Board initial, Heuristic heuristic) {
+        this(initial, heuristic, Long.MAX_VALUE);
+    }
+
+    /**
+     * Find a solution to the initial board, giving up after budgetMillis, in which case
+     * moves() is -1 and solution() null although the board is solvable
+     *
+     * @param initial
+     * @param heuristic
+     * @param budgetMillis
+     */
+    public Solver(Board initial, Heuristic heuristic, long budgetMillis) {
+        this(initial, heuristic, budgetMillis, null);
+    }
+
+    /**
+     * Find a solution to the initial board within budgetMillis, reporting the cost of the search
+     * to listener once done
+     *
+     * @param initial
+     * @param heuristic
+     * @param budgetMillis
+     * @param listener
+     */
+    public Solver(Board initial, Heuristic heuristic, long budgetMillis, SearchListener listener) {
+        this(initial, heuristic, deadline(budgetMillis), 1, 1, Integer.MAX_VALUE, listener);
+    }
+
+    /**
+     * Weighted search: boards are ordered by scale * moves + weight * estimate, so the solution
+     * found is at most weight / scale times longer than a shortest one. Boards that cannot lead
+     * to a solution shorter than cutoff are dropped, and the search gives up at deadline.
+     */
+    Solver(Board initial, Heuristic heuristic, long deadline, int weight, int scale, int cutoff, SearchListener listener) {
         if (initial == null) {
             throw new IllegalArgumentException("Board cannot be null");
         }
+        if (heuristic == null) {
+            throw new IllegalArgumentException("Heuristic cannot be null");
+        }
+        if (scale <= 0 || weight < scale) {
+            throw new IllegalArgumentException("weight / scale should be at least 1");
+        }
 
-        Board twinBoard = initial.twin();
-        isSolvable = true;
+        this.initial = initial;
+        this.heuristic = heuristic;
+        this.deadline = deadline;
+        this.weight = weight;
+        this.scale = scale;
+        this.cutoff = cutoff;
+        this.listener = listener;
 
-        MinPQ<EnhancedBoard> minPQ = new MinPQ<>();
-        MinPQ<EnhancedBoard> twinMinPQ = new MinPQ<>();
+        long start = System.nanoTime();
+        search();
+        if (listener != null) {
+            listener.searched(initial, new SearchStats(moves, generated, expanded, duplicates, peakFrontier,
+                    heuristicNanos, System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * System.nanoTime value budgetMillis from now, Long.MAX_VALUE for budgets too large to reach
+     */
+    static long deadline(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("budgetMillis should be non-negative");
+        }
+
+        long now = System.nanoTime();
+        long budgetNanos = budgetMillis >= Long.MAX_VALUE / 1_000_000L ? Long.MAX_VALUE : budgetMillis * 1_000_000L;
+        long deadline = now + budgetNanos;
+        return deadline < now ? Long.MAX_VALUE : deadline;
+    }
+
+    private void search() {
+        // The parity of the board decides solvability up front, so only one search is needed
+        isSolvable = initial.isSolvable();
+        if (!isSolvable) return;
 
-        minPQ.insert(new EnhancedBoard(initial, 0, null));
-        twinMinPQ.insert(new EnhancedBoard(twinBoard, 0, null));
+        // Priorities are small integers, so buckets beat a comparison heap; the newest (deepest) board breaks ties
+        BucketQueue<Node> open = new BucketQueue<>();
 
-        EnhancedBoard prev = null;
-        while (!minPQ.isEmpty()) {
-            EnhancedBoard curr = minPQ.delMin();
-            EnhancedBoard currTwin = twinMinPQ.delMin();
+        // Closed set: the fewest moves each board was reached in so far, and the last of them
+        TranspositionTable closed = new TranspositionTable();
 
-            if (curr.board.isGoal()) {
-                prev = curr;
+        open.insert(new Node(initial, 0), weight * estimate(initial));
+        closed.offer(initial, 0);
+        generated++;
+
+        int n = initial.dimension();
+        for (long popped = 1 ; !open.isEmpty() ; popped++) {
+            if (popped % CLOCK_INTERVAL == 0 && deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+                timedOut = true;
                 break;
             }
 
-            if (currTwin.board.isGoal()) {
-                prev = null;
-                isSolvable = false;
+            peakFrontier = Math.max(peakFrontier, open.size());
+            Node curr = open.delMin();
+            // Stale: the board was reached in fewer moves since this node was queued
+            if (curr.moves > curr.best(closed)) {
+                duplicates++;
+                continue;
+            }
+
+            Board board = curr.board(n);
+            if (board.isGoal()) {
+                generateSolution(board, curr.moves, closed);
                 break;
             }
 
-            for (Board neighbor : curr.board.neighbors()) {
-                if (curr.parent != null && neighbor.equals(curr.parent.board)) {
-                    continue;
-                }
+            expand(board, curr.moves, open, closed);
+            expanded++;
+        }
+    }
 
-                minPQ.insert(new EnhancedBoard(neighbor, curr.moves + 1, curr));
-            }
+    /**
+     * Queue the neighbors of board not already reached in as few moves
+     */
+    private void expand(Board board, int moves, BucketQueue<Node> open, TranspositionTable closed) {
+        for (int direction = Board.UP ; direction <= Board.RIGHT ; direction++) {
+            Board neighbor = board.move(direction);
+            if (neighbor == null) continue;
 
-            for (Board neighbor : currTwin.board.neighbors()) {
-                if (currTwin.parent != null && neighbor.equals(currTwin.parent.board)) {
-                    continue;
-                }
+            generated++;
+            int h = estimate(neighbor);
+            // The heuristic never overestimates, so this cannot lead to a solution shorter than cutoff
+            if (moves + 1 + h >= cutoff) continue;
 
-                twinMinPQ.insert(new EnhancedBoard(neighbor, currTwin.moves + 1, currTwin));
+            if (closed.offer(neighbor, moves + 1, direction)) {
+                open.insert(new Node(neighbor, moves + 1), scale * (moves + 1) + weight * h);
+            } else {
+                duplicates++;
             }
         }
+    }
+
+    private int estimate(Board board) {
+        if (listener == null) {
+            return heuristic.estimate(board);
+        }
 
-        generateSolution(prev);
+        long start = System.nanoTime();
+        int estimate = heuristic.estimate(board);
+        heuristicNanos += System.nanoTime() - start;
+        return estimate;
     }
 
-    private void generateSolution(EnhancedBoard prev) {
-        solution = new ArrayList<>();
-        while (prev != null) {
-            solution.add(prev.board);
-            prev = prev.parent;
+    /**
+     * Trace the directions back from goal to initial through the closed set
+     */
+    private void generateSolution(Board goal, int moves, TranspositionTable closed) {
+        this.moves = moves;
+        this.path = new int[moves];
+
+        Board board = goal;
+        for (int i = moves - 1 ; i >= 0 ; i--) {
+            path[i] = closed.direction(board);
+            board = board.move(path[i] ^ 2);
         }
+    }
+
+    /**
+     * Directions the blank takes from initial in the solution found, null if none was; shared,
+     * not to be modified
+     */
+    int[] path() {
+        return moves < 0 ? null : path;
+    }
 
-        Collections.reverse(solution);
+    /**
+     * Did the search give up at the deadline ?
+     */
+    boolean timedOut() {
+        return timedOut;
     }
 
     /**
@@ -105,33 +267,42 @@ public class Solver {
     }
 
     /**
-     * Min number of moves to solve initial board
+     * Min number of moves to solve initial board, -1 if it is unsolvable or the budget ran out
      *
      * @return int
      */
     public int moves() {
-        return solution.size() - 1;
+        return moves;
     }
 
     /**
-     * Sequence of boards in a shortest solution
+     * Sequence of boards in a shortest solution, rebuilt from the moves on first use
      *
      * @return
      */
     public Iterable<Board> solution() {
-        if (!isSolvable) return null;
+        if (moves < 0) return null;
+
+        if (solution == null) {
+            solution = new ArrayList<>(moves + 1);
+            Board board = initial;
+            solution.add(board);
+            for (int i = 0 ; i < moves ; i++) {
+                board = board.move(path[i]);
+                solution.add(board);
+            }
+        }
 
         return new ArrayList<>(solution);
     }
 
     /**
-     * Test client (see below)
+     * Test client: solves the puzzle in the file named by the first argument
      *
      * @param args
      */
     public static void main(String[] args) {
-        In in = new In("/Users/deepansm/workspace/Algs4/src/src/princeton/assignment4/puzzle04.txt");
-        // In in = new In("/Users/deepansm/workspace/Algs4/src/src/princeton/assignment4/puzzle3x3-unsolvable.txt");
+        In in = new In(args[0]);
         int n = in.readInt();
         int[][] blocks = new int[n][n];
         for (int i = 0; i < n; i++)
@@ -151,4 +322,4 @@ public class Solver {
                 StdOut.println(board);
         }
     }
-}
\ No newline at end of file
+}
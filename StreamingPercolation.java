@@ -0,0 +1,352 @@
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Percolation check of a fixed n-by-n open/blocked configuration that reads the grid one row
+ * at a time and keeps only O(n) state, using Hoshen-Kopelman labelling. After each row the
+ * labels still touching the current row are relabelled 0, 1, 2, ... so the label union-find
+ * never grows past 2n entries, and clusters that did not reach the current row are counted
+ * as finished. This handles grids far too large for {@link Percolation}.
+ */
+public class StreamingPercolation {
+
+    /**
+     * Source of the grid, one row at a time. Site (row, col) is open if bit col of the row is set,
+     * bit col living in bit col % 64 of word col / 64.
+     */
+    public interface RowSource {
+
+        /**
+         * Fill bits with row, rows are requested in order from 0 to n - 1
+         *
+         * @param row
+         * @param bits
+         */
+        void readRow(int row, long[] bits);
+    }
+
+    private int dimension;
+    private long openSiteCount;
+    private long clusterCount;
+    private long largestClusterSize;
+    private boolean percolates;
+
+    // Label union-find, sized for the labels of the previous row plus the new labels of the current row
+    private int parent[];
+    private long clusterSize[];
+    private boolean connectedTop[];
+
+    /**
+     * Scan the n-by-n grid produced by rows
+     *
+     * @param n
+     * @param rows
+     */
+    public StreamingPercolation(int n, RowSource rows) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n should be greater than 0");
+        }
+        if (rows == null) {
+            throw new IllegalArgumentException("Row source cannot be null");
+        }
+
+        this.dimension = n;
+        this.parent = new int[2 * n];
+        this.clusterSize = new long[2 * n];
+        this.connectedTop = new boolean[2 * n];
+
+        long bits[] = new long[words(n)];
+        int prevLabels[] = new int[n];
+        int currLabels[] = new int[n];
+        int prevLabelCount = 0;
+
+        // Row stamps, so the per row bookkeeping never has to be cleared
+        int reachedRow[] = new int[2 * n];
+        int finishedRow[] = new int[2 * n];
+        int relabelledRow[] = new int[2 * n];
+        int relabel[] = new int[2 * n];
+        long relabelledSize[] = new long[2 * n];
+        boolean relabelledTop[] = new boolean[2 * n];
+
+        Arrays.fill(prevLabels, -1);
+        for (int row = 0 ; row < n ; row++) {
+            rows.readRow(row, bits);
+
+            int labelCount = prevLabelCount;
+            for (int col = 0 ; col < n ; col++) {
+                if ((bits[col >>> 6] >>> col & 1L) == 0) {
+                    currLabels[col] = -1;
+                    continue;
+                }
+
+                openSiteCount++;
+                int up = prevLabels[col];
+                int left = col > 0 ? currLabels[col - 1] : -1;
+
+                int root;
+                if (up < 0 && left < 0) {
+                    root = labelCount++;
+                    parent[root] = root;
+                    clusterSize[root] = 0;
+                    connectedTop[root] = row == 0;
+                } else if (left < 0) {
+                    root = find(up);
+                } else if (up < 0) {
+                    root = find(left);
+                } else {
+                    root = union(find(up), find(left));
+                }
+
+                clusterSize[root]++;
+                currLabels[col] = root;
+            }
+
+            int stamp = row + 1;
+            for (int col = 0 ; col < n ; col++) {
+                if (currLabels[col] >= 0) {
+                    reachedRow[find(currLabels[col])] = stamp;
+                }
+            }
+
+            // Clusters of the previous row that did not reach this one are complete
+            for (int label = 0 ; label < prevLabelCount ; label++) {
+                int root = find(label);
+                if (reachedRow[root] != stamp && finishedRow[root] != stamp) {
+                    finishedRow[root] = stamp;
+                    finishCluster(root);
+                }
+            }
+
+            if (row == n - 1) {
+                for (int col = 0 ; col < n ; col++) {
+                    if (currLabels[col] >= 0 && connectedTop[find(currLabels[col])]) {
+                        percolates = true;
+                    }
+                }
+            }
+
+            // Relabel the clusters reaching this row as 0, 1, 2, ...
+            int nextLabel = 0;
+            for (int col = 0 ; col < n ; col++) {
+                if (currLabels[col] < 0) {
+                    prevLabels[col] = -1;
+                    continue;
+                }
+
+                int root = find(currLabels[col]);
+                if (relabelledRow[root] != stamp) {
+                    relabelledRow[root] = stamp;
+                    relabel[root] = nextLabel;
+                    relabelledSize[nextLabel] = clusterSize[root];
+                    relabelledTop[nextLabel] = connectedTop[root];
+                    nextLabel++;
+                }
+
+                prevLabels[col] = relabel[root];
+            }
+
+            for (int label = 0 ; label < nextLabel ; label++) {
+                parent[label] = label;
+                clusterSize[label] = relabelledSize[label];
+                connectedTop[label] = relabelledTop[label];
+            }
+
+            prevLabelCount = nextLabel;
+        }
+
+        for (int label = 0 ; label < prevLabelCount ; label++) {
+            finishCluster(label);
+        }
+    }
+
+    private void finishCluster(int root) {
+        clusterCount++;
+        largestClusterSize = Math.max(largestClusterSize, clusterSize[root]);
+    }
+
+    private int find(int label) {
+        while (label != parent[label]) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+
+        return label;
+    }
+
+    private int union(int rootP, int rootQ) {
+        if (rootP == rootQ) return rootP;
+
+        parent[rootQ] = rootP;
+        clusterSize[rootP] += clusterSize[rootQ];
+        connectedTop[rootP] |= connectedTop[rootQ];
+        return rootP;
+    }
+
+    private static int words(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    /**
+     * Grid dimension n
+     *
+     * @return
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    /**
+     * Does the system percolate ?
+     *
+     * @return
+     */
+    public boolean percolates() {
+        return percolates;
+    }
+
+    /**
+     * Number of open sites
+     *
+     * @return
+     */
+    public long numberOfOpenSites() {
+        return openSiteCount;
+    }
+
+    /**
+     * Number of clusters of open sites
+     *
+     * @return
+     */
+    public long numberOfClusters() {
+        return clusterCount;
+    }
+
+    /**
+     * Number of sites in the largest cluster of open sites
+     *
+     * @return
+     */
+    public long largestClusterSize() {
+        return largestClusterSize;
+    }
+
+    /**
+     * Rows of an n-by-n grid where each site is independently open with probability p
+     *
+     * @param n
+     * @param p
+     * @param seed
+     * @return
+     */
+    public static RowSource randomRows(final int n, final double p, long seed) {
+        if (!(p >= 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("p = " + p + " is not a probability.");
+        }
+
+        final SplittableRandom random = new SplittableRandom(seed);
+        return new RowSource() {
+            @Override
+            public void readRow(int row, long[] bits) {
+                Arrays.fill(bits, 0L);
+                for (int col = 0 ; col < n ; col++) {
+                    if (random.nextDouble() < p) {
+                        bits[col >>> 6] |= 1L << col;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Rows read from a file of n rows, each row being (n + 63) / 64 little-endian longs,
+     * mapped into memory a window of rows at a time
+     */
+    public static class MappedRowSource implements RowSource, Closeable {
+
+        // Largest window mapped at once
+        private static final long WINDOW_BYTES = 1L << 28;
+
+        private final FileChannel channel;
+        private final int dimension;
+        private final int rowWords;
+        private final int rowsPerWindow;
+        private LongBuffer window;
+        private int windowStart;
+
+        /**
+         * Open the bit file of an n-by-n grid
+         *
+         * @param path
+         * @param n
+         * @throws IOException
+         */
+        public MappedRowSource(Path path, int n) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.dimension = n;
+            this.rowWords = words(n);
+
+            long rowBytes = 8L * rowWords;
+            if (channel.size() < rowBytes * n) {
+                channel.close();
+                throw new IllegalArgumentException("File is too small for a " + n + "-by-" + n + " grid");
+            }
+
+            this.rowsPerWindow = (int) Math.max(1, Math.min(n, WINDOW_BYTES / rowBytes));
+            this.windowStart = -rowsPerWindow;
+        }
+
+        @Override
+        public void readRow(int row, long[] bits) {
+            if (row < windowStart || row >= windowStart + rowsPerWindow) {
+                map(row);
+            }
+
+            window.position((row - windowStart) * rowWords);
+            window.get(bits, 0, rowWords);
+        }
+
+        private void map(int row) {
+            long rowBytes = 8L * rowWords;
+            long rows = Math.min(rowsPerWindow, dimension - row);
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, row * rowBytes, rows * rowBytes);
+                window = buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+                windowStart = row;
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map row " + row, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Test client, scans a random n-by-n grid with occupation probability p
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int n = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+
+        StreamingPercolation percolation = new StreamingPercolation(n, randomRows(n, p, System.nanoTime()));
+        StdOut.println("percolates = " + percolation.percolates());
+        StdOut.println("open sites = " + percolation.numberOfOpenSites());
+        StdOut.println("clusters = " + percolation.numberOfClusters());
+        StdOut.println("largest cluster = " + percolation.largestClusterSize());
+    }
+}
@@ -0,0 +1,72 @@
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs a batch of tasks on an executor and hands their results over, translating interruption and
+ * task failures into IllegalStateException.
+ */
+final class Tasks {
+
+    private Tasks() {
+    }
+
+    /**
+     * Hands the results over in submission order, for merges whose result depends on the order
+     */
+    static <T> void inOrder(ExecutorService executor, List<? extends Callable<T>> tasks, Consumer<? super T> results) {
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.accept(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        } catch (ExecutionException e) {
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Hands each result over as soon as its task completes, and keeps no reference to it after,
+     * so only the results of running tasks and of those not yet handed over are held at once
+     */
+    static <T> void asCompleted(ExecutorService executor, List<? extends Callable<T>> tasks, Consumer<? super T> results) {
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Set<Future<T>> pending = Collections.newSetFromMap(new IdentityHashMap<Future<T>, Boolean>());
+        try {
+            for (Callable<T> task : tasks) {
+                pending.add(completion.submit(task));
+            }
+
+            while (!pending.isEmpty()) {
+                Future<T> future = completion.take();
+                pending.remove(future);
+                results.accept(future.get());
+            }
+        } catch (InterruptedException e) {
+            throw interrupted(e);
+        } catch (ExecutionException e) {
+            throw failed(e);
+        } finally {
+            for (Future<T> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static IllegalStateException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new IllegalStateException("Interrupted while waiting for the tasks", e);
+    }
+
+    private static IllegalStateException failed(ExecutionException e) {
+        return new IllegalStateException("Task failed", e.getCause());
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Open-addressing hash table from boards to the lowest number of moves they were reached in,
+ * the closed set of the A* search, along with the direction of the last of those moves so a
+ * solution can be traced back. Entries live in primitive arrays keyed on the 64 bit board
+ * key and probed linearly. Up to 4-by-4 the key is the packed board, so nothing else is kept;
+ * larger boards also keep the board itself to rule out Zobrist collisions.
+ */
+public class TranspositionTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    // Stored in place of a direction for boards not reached by a move, such as the initial board
+    private static final int NO_DIRECTION = 4;
+
+    private long keys[];
+    // Moves plus one, shifted left past the 3 bit direction; 0 marks an empty slot
+    private int costs[];
+    private Board boards[];
+    private int mask;
+    private int size;
+
+    /**
+     * Create an empty table
+     */
+    public TranspositionTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.costs = new int[capacity];
+        this.boards = null;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Lowest number of moves board was reached in, Integer.MAX_VALUE if it was never seen
+     *
+     * @param board
+     * @return
+     */
+    public int get(Board board) {
+        int slot = find(board);
+        return costs[slot] == 0 ? Integer.MAX_VALUE : (costs[slot] >>> 3) - 1;
+    }
+
+    /**
+     * Lowest number of moves the board with the given exact key was reached in, without the board
+     * at hand; only for tables of boards up to 4-by-4, whose keys are the packed boards
+     *
+     * @param key
+     * @return
+     */
+    public int get(long key) {
+        if (boards != null) {
+            throw new IllegalStateException("Keys of this table are not exact");
+        }
+
+        int slot = (int) Board.mix(key) & mask;
+        while (costs[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return costs[slot] == 0 ? Integer.MAX_VALUE : (costs[slot] >>> 3) - 1;
+    }
+
+    /**
+     * Direction of the blank in the last of the fewest moves board was reached in
+     *
+     * @param board
+     * @return
+     */
+    public int direction(Board board) {
+        int slot = find(board);
+        if (costs[slot] == 0) {
+            throw new IllegalArgumentException("Board was never reached");
+        }
+        if ((costs[slot] & 7) == NO_DIRECTION) {
+            throw new IllegalArgumentException("Board was not reached by a move");
+        }
+
+        return costs[slot] & 7;
+    }
+
+    /**
+     * Record that board was reached in moves, unless it was already reached in as few, without
+     * a direction; {@link #direction(Board)} rejects the board until it is offered with one
+     *
+     * @param board
+     * @param moves
+     * @return true if moves is the best seen for board so far
+     */
+    public boolean offer(Board board, int moves) {
+        return record(board, moves, NO_DIRECTION);
+    }
+
+    /**
+     * Record that board was reached in moves, the last one moving the blank in direction,
+     * unless it was already reached in as few
+     *
+     * @param board
+     * @param moves
+     * @param direction
+     * @return true if moves is the best seen for board so far
+     */
+    public boolean offer(Board board, int moves, int direction) {
+        if (direction < Board.UP || direction > Board.RIGHT) {
+            throw new IllegalArgumentException("direction = " + direction + " is not a direction.");
+        }
+
+        return record(board, moves, direction);
+    }
+
+    private boolean record(Board board, int moves, int direction) {
+        int slot = find(board);
+        if (costs[slot] != 0) {
+            if ((costs[slot] >>> 3) - 1 <= moves) return false;
+
+            costs[slot] = (moves + 1) << 3 | direction;
+            return true;
+        }
+
+        keys[slot] = board.key();
+        costs[slot] = (moves + 1) << 3 | direction;
+        if (!board.hasExactKey()) {
+            if (boards == null) {
+                boards = new Board[keys.length];
+            }
+
+            boards[slot] = board;
+        }
+
+        if (++size > keys.length >>> 1) {
+            resize();
+        }
+
+        return true;
+    }
+
+    /**
+     * Number of boards in the table
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Slot holding board, or the empty slot where it belongs
+     */
+    private int find(Board board) {
+        long key = board.key();
+        int slot = (int) Board.mix(key) & mask;
+        while (costs[slot] != 0) {
+            if (keys[slot] == key && (boards == null || board.equals(boards[slot]))) {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize() {
+        long oldKeys[] = keys;
+        int oldCosts[] = costs;
+        Board oldBoards[] = boards;
+
+        allocate(2 * oldKeys.length);
+        if (oldBoards != null) {
+            boards = new Board[keys.length];
+        }
+
+        for (int i = 0 ; i < oldKeys.length ; i++) {
+            if (oldCosts[i] == 0) continue;
+
+            int slot = (int) Board.mix(oldKeys[i]) & mask;
+            while (costs[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = oldKeys[i];
+            costs[slot] = oldCosts[i];
+            if (oldBoards != null) {
+                boards[slot] = oldBoards[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Compact union-find over the integers 0 to n - 1, backed by two int arrays.
+ * Uses union by size and path halving, so find is effectively constant
+ * time and never recurses.
+ */
+public class UnionFind {
+
+    private final int parent[];
+    private final int size[];
+
+    /**
+     * Create n singleton components
+     *
+     * @param n
+     */
+    public UnionFind(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n should be greater than 0");
+        }
+
+        this.parent = new int[n];
+        this.size = new int[n];
+        for (int i = 0 ; i < n ; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    /**
+     * Make p a singleton component again, whatever it was linked to before.
+     * Callers must make sure nothing still linked to p is used afterwards.
+     *
+     * @param p
+     */
+    public void makeSet(int p) {
+        parent[p] = p;
+        size[p] = 1;
+    }
+
+    /**
+     * Root of the component containing p, halving the path on the way up
+     *
+     * @param p
+     * @return
+     */
+    public int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+
+        return p;
+    }
+
+    /**
+     * Merge the components containing p and q
+     *
+     * @param p
+     * @param q
+     * @return root of the merged component
+     */
+    public int union(int p, int q) {
+        return unionRoots(find(p), find(q));
+    }
+
+    /**
+     * Merge two components given their roots, the smaller one goes under the larger one
+     *
+     * @param rootP
+     * @param rootQ
+     * @return root of the merged component
+     */
+    public int unionRoots(int rootP, int rootQ) {
+        if (rootP == rootQ) return rootP;
+
+        if (size[rootP] < size[rootQ]) {
+            parent[rootP] = rootQ;
+            size[rootQ] += size[rootP];
+            return rootQ;
+        }
+
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        return rootP;
+    }
+
+    /**
+     * Are p and q in the same component ?
+     *
+     * @param p
+     * @param q
+     * @return
+     */
+    public boolean connected(int p, int q) {
+        return find(p) == find(q);
+    }
+
+    /**
+     * Number of elements in the component rooted at root
+     *
+     * @param root
+     * @return
+     */
+    public int size(int root) {
+        return size[root];
+    }
+}